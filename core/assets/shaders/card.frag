@@ -0,0 +1,63 @@
+// Draws both cards and ordinary sprites, so that cards can share a SpriteBatch with everything else on the screen.
+//
+// Cards are told apart from ordinary sprites by the odd vertex alpha card.vert looks for, which SpriteBatch never
+// produces, so any other sprite is drawn as SpriteBatch would draw it whatever its texture coordinates. For cards,
+// CardShader adds CARD_U_OFFSET + 2 * (border color index) to u, and BACK_V_OFFSET to v for card backs. The vertex
+// color is the card's background color, and the texture is a sheet of card designs on transparent cells that are all
+// the same size, so the corners, the border and the background are all worked out here.
+#ifdef GL_ES
+precision highp float;
+#endif
+
+#define CARD_U_OFFSET 16.0
+#define BACK_V_OFFSET 2.0
+#define MAX_BORDER_COLORS 16
+
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying float v_isCard;
+uniform sampler2D u_texture;
+
+uniform vec2 u_sheetCells;     // Cells across and down the design sheet
+uniform vec2 u_cardSize;       // Corner radius and border thicknesses are in the same units as this
+uniform float u_cornerRadius;
+uniform float u_faceBorderThickness;
+uniform float u_backBorderThickness;
+uniform vec4 u_borderColors[MAX_BORDER_COLORS];
+
+void main() {
+    if(v_isCard < 0.5) {
+        gl_FragColor = v_color * texture2D(u_texture, v_texCoords);
+        return;
+    }
+
+    float borderIndex = floor((v_texCoords.x - CARD_U_OFFSET) / 2.0);
+    bool isBack = v_texCoords.y >= BACK_V_OFFSET;
+    vec2 texCoords = vec2(v_texCoords.x - CARD_U_OFFSET - 2.0 * borderIndex,
+            isBack ? v_texCoords.y - BACK_V_OFFSET : v_texCoords.y);
+
+    // Constant indices only, since not every GL ES driver can index uniform arrays with a variable
+    vec4 borderColor = u_borderColors[0];
+    for(int i = 1; i < MAX_BORDER_COLORS; i++) {
+        if(float(i) == borderIndex) {
+            borderColor = u_borderColors[i];
+        }
+    }
+
+    // Signed distance from the edge of the rounded card, negative inside it
+    vec2 position = fract(texCoords * u_sheetCells) * u_cardSize;
+    vec2 fromCorner = abs(position - 0.5 * u_cardSize) - (0.5 * u_cardSize - u_cornerRadius);
+    float distance = length(max(fromCorner, 0.0)) + min(max(fromCorner.x, fromCorner.y), 0.0) - u_cornerRadius;
+
+#ifdef GL_ES
+    float softness = 1.5;
+#else
+    float softness = max(fwidth(distance), 1.0);
+#endif
+
+    float borderThickness = isBack ? u_backBorderThickness : u_faceBorderThickness;
+    vec4 design = texture2D(u_texture, texCoords);
+    vec3 color = mix(v_color.rgb, design.rgb, design.a);
+    color = mix(color, borderColor.rgb, smoothstep(-borderThickness - softness, -borderThickness, distance));
+    gl_FragColor = vec4(color, v_color.a * (1.0 - smoothstep(-softness, 0.0, distance)));
+}
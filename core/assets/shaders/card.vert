@@ -0,0 +1,21 @@
+// Same as SpriteBatch's default vertex shader, except that it tells card.frag which vertices belong to cards.
+// Everything else that tells card.frag how to draw a card is passed through in the vertex color and texture
+// coordinates.
+attribute vec4 a_position;
+attribute vec4 a_color;
+attribute vec2 a_texCoord0;
+uniform mat4 u_projTrans;
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying float v_isCard;
+
+void main() {
+    v_color = a_color;
+    // Color.toFloatBits always clears the lowest bit of alpha, so only CardShader's vertices have an odd alpha. Their
+    // alpha is 4 * (the background's alpha) + 1, out of 253.
+    float alpha = floor(a_color.a * 255.0 + 0.5);
+    v_isCard = mod(alpha, 2.0);
+    v_color.a = (v_isCard > 0.5) ? (alpha - 1.0) / 252.0 : v_color.a * (255.0 / 254.0);
+    v_texCoords = a_texCoord0;
+    gl_Position = u_projTrans * a_position;
+}
@@ -7,6 +7,7 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 import com.badlogic.gdx.utils.Timer;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.dosse.upnp.UPnP;
@@ -16,16 +17,21 @@ import com.sage.hearts.client.network.ClientConnection;
 import com.sage.hearts.client.network.ClientPacket;
 import com.sage.hearts.client.screens.*;
 import com.sage.hearts.server.Server;
+import com.sage.hearts.utils.network.Protocol;
 import com.sage.hearts.utils.renderable.RenderableCardEntity;
 
 import java.io.IOException;
 
 public class HeartsGame extends Game {
     private static final Color BACKGROUND_COLOR = new Color(0, 0.2f, 0.11f, 1);
+    private static final long RESUME_RETRY_DELAY_MILLIS = 1000;
+    private static final long RESUME_GIVE_UP_MILLIS = 30_000;
     private static Texture backgroundTexture;
 
     private GameState gameState;
-    private ClientConnection clientConnection;
+    private volatile ClientConnection clientConnection; // Replaced from another thread when resuming
+    private Thread resumeThread = null;
+    private long resumeGiveUpTime = 0;
     private Server server;
     private boolean successfullyOpenedServerPort = false;
 
@@ -66,6 +72,8 @@ public class HeartsGame extends Game {
         gameScreen = new GameScreen(this);
         playgroundScreen = new PlaygroundScreen(this);
         setScreen(startScreen);
+        // Decoded while the player is still on the start screen, instead of when the first hand is dealt
+        RenderableCardEntity.preloadDesigns();
 
         Runtime.getRuntime().addShutdownHook(new Thread(this::closeGameServer));
     }
@@ -86,6 +94,7 @@ public class HeartsGame extends Game {
 
     public void showLobbyScreen() {
         setScreen(lobbyScreen);
+        RenderableCardEntity.preloadDesigns(); // In case the designs were cleared since the start screen
     }
 
     public void showGameScreen() {
@@ -101,8 +110,19 @@ public class HeartsGame extends Game {
     }
 
     public void joinGame(String serverIP, int port, String name) {
+        joinGame(serverIP, port, Server.DEFAULT_TABLE_ID, name);
+    }
+
+    public void joinGame(String serverIP, int port, int tableId, String name) {
         clientConnection = new ClientConnection(serverIP, port, name, this);
         clientConnection.start();
+        ClientPacket joinTablePacket = new ClientPacket(ClientCode.JOIN_TABLE);
+        joinTablePacket.data.put("table", tableId);
+        try {
+            clientConnection.sendPacket(joinTablePacket);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
         ClientPacket namePacket = new ClientPacket(ClientCode.NAME);
         namePacket.data.put("name", name);
         try {
@@ -112,6 +132,71 @@ public class HeartsGame extends Game {
         }
     }
 
+    // Reconnects to the server the connection was lost to and asks to be put back in the round. This returns right
+    // away; screens pick up the new connection from getClientConnection(), and the server answers RESUME with either
+    // CONNECTION_ACCEPTED and GAME_SNAPSHOT or CONNECTION_DENIED.
+    public void resumeGame(String sessionToken) {
+        resumeGiveUpTime = System.currentTimeMillis() + RESUME_GIVE_UP_MILLIS;
+        startResuming(sessionToken, 0);
+    }
+
+    // Called when the server answers RESUME with CONNECTION_DENIED, which it also does if it hasn't noticed the lost
+    // connection yet, or when the connection is lost again before it answers. Returns whether or not there's still time
+    // to try again.
+    public boolean retryResumeGame(String sessionToken) {
+        if(resumeThread.isAlive()) {
+            // Already trying again, and the connection that was given up on is being replaced
+            return true;
+        }
+        if(System.currentTimeMillis() + RESUME_RETRY_DELAY_MILLIS >= resumeGiveUpTime) {
+            return false;
+        }
+        clientConnection.quit();
+        startResuming(sessionToken, RESUME_RETRY_DELAY_MILLIS);
+        return true;
+    }
+
+    private void startResuming(String sessionToken, long delayMillis) {
+        final ClientConnection lostConnection = clientConnection;
+        final long giveUpTime = resumeGiveUpTime;
+        resumeThread = new Thread(() -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch(InterruptedException e) {
+                return;
+            }
+            while(System.currentTimeMillis() < giveUpTime) {
+                try {
+                    ClientConnection resumedConnection = new ClientConnection(lostConnection.serverIP,
+                            lostConnection.port, null, this);
+                    resumedConnection.start();
+                    // The protocol is picked before RESUME so that the snapshot comes back in it
+                    ClientPacket protocolPacket = new ClientPacket(ClientCode.PROTOCOL);
+                    protocolPacket.data.put("version", Protocol.LATEST);
+                    resumedConnection.sendPacket(protocolPacket);
+                    ClientPacket resumePacket = new ClientPacket(ClientCode.RESUME);
+                    resumePacket.data.put("session", sessionToken);
+                    resumedConnection.sendPacket(resumePacket);
+                    clientConnection = resumedConnection;
+                    return;
+                } catch(GdxRuntimeException | IOException e) {
+                    // The server may not be reachable again yet
+                }
+                try {
+                    Thread.sleep(RESUME_RETRY_DELAY_MILLIS);
+                } catch(InterruptedException e) {
+                    break;
+                }
+            }
+            Gdx.app.postRunnable(() -> {
+                gameState.message = "The connection to the host has been lost.";
+                showStartScreen();
+            });
+        }, "Resume game");
+        resumeThread.setDaemon(true);
+        resumeThread.start();
+    }
+
     public void startGameServer(int port) {
         closeGameServer();
 
@@ -160,6 +245,12 @@ public class HeartsGame extends Game {
         titleTimer.stop();
     }
 
+    @Override
+    public void render() {
+        super.render();
+        RenderableCardEntity.uploadPreloadedDesigns();
+    }
+
     @Override
     public void dispose() {
         startScreen.dispose();
@@ -10,10 +10,12 @@ import com.sage.hearts.client.network.LostConnectionToServerException;
 import com.sage.hearts.server.network.ServerCode;
 import com.sage.hearts.server.network.ServerPacket;
 import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.card.CardSet;
 import com.sage.hearts.utils.card.InvalidCardException;
 import com.sage.hearts.utils.card.Rank;
 import com.sage.hearts.utils.card.Suit;
 import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.network.Protocol;
 import com.sage.hearts.utils.renderable.RenderableCardList;
 import com.sage.hearts.utils.renderable.RenderableHand;
 
@@ -34,6 +36,18 @@ public class GameState {
     public final Actions actions = new Actions();
 
     private final RenderableCardList<RenderableHeartsCard> lastWarheads = new RenderableCardList<>();
+    // The cards the server will accept as this player's play, sent with MAKE_PLAY. Null if the server didn't send them.
+    private CardSet validPlays = null;
+    // When, in System.currentTimeMillis() time, the server will play or pick warheads for this player. 0 if it won't.
+    private long answerDeadline = 0;
+    // Sent with CONNECTION_ACCEPTED by servers that let players get back into a round they dropped out of
+    private String sessionToken = null;
+    private boolean roundInProgress = false;
+    // Set from losing the connection mid-round until the server answers RESUME with CONNECTION_ACCEPTED
+    private boolean resuming = false;
+    // Set while waiting on the snapshot asked for after a packet couldn't be applied, so a snapshot that can't be
+    // applied either doesn't ask for another
+    private boolean snapshotRequested = false;
 
     public final RenderablePlayer[] players = new RenderablePlayer[4];
 
@@ -54,6 +68,11 @@ public class GameState {
         this.game = game;
     }
 
+    // Negative if the server isn't waiting on this player, or won't ever answer for them
+    public long getMillisLeftToAnswer() {
+        return (answerDeadline == 0) ? -1 : Math.max(0, answerDeadline - System.currentTimeMillis());
+    }
+
     public void clean() {
         for(int i = 0; i < players.length; i++) {
             players[i] = null;
@@ -65,6 +84,10 @@ public class GameState {
         thisPlayerHand.clear();
         warheadMap.clear();
         lastWarheads.clear();
+        sessionToken = null;
+        roundInProgress = false;
+        resuming = false;
+        snapshotRequested = false;
     }
 
     public boolean update(ClientConnection client) {
@@ -124,6 +147,12 @@ public class GameState {
                     waitForPlayers(); break;
                 case NEW_PLAYER_POINTS:
                     allPlayerPoints(); break;
+                case PLAYER_AWAY:
+                    playerAway(); break;
+                case PLAYER_BACK:
+                    playerBack(); break;
+                case NO_ROUND:
+                    noRound(); break;
 
                     // Trick codes:
                 case TRICK_START:
@@ -144,6 +173,8 @@ public class GameState {
                     waitForLeadingPlayer(); break;
                 case TRICK_END:
                     trickEnd(); break;
+                case PLAY_RESOLVED:
+                    playResolved(); break;
 
                     // Round codes:
                 case ROUND_START:
@@ -160,6 +191,8 @@ public class GameState {
                     waitForWarheads(); break;
                 case ROUND_END:
                     roundEnd(); break;
+                case GAME_SNAPSHOT:
+                    gameSnapshot(); break;
                 }
             } catch(ClassCastException | NullPointerException | InvalidServerPacketException e) {
                 Gdx.app.log("Updater.update()",
@@ -168,11 +201,24 @@ public class GameState {
                                 + e.getMessage());
                 e.printStackTrace();
                 message = e.getClass() + ": " + e.getMessage();
-                // TODO: When encountering an error here, request the full game state from the server
+                requestSnapshot();
             }
             return serverCode != ServerCode.PING; // PING does not constitute and update as of now
         }
 
+        private void requestSnapshot() {
+            ClientConnection client = game.getClientConnection();
+            if(snapshotRequested || client == null || client.getProtocolVersion() < Protocol.SNAPSHOTS) {
+                return;
+            }
+            try {
+                client.sendPacket(new ClientPacket(ClientCode.REQUEST_SNAPSHOT));
+                snapshotRequested = true;
+            } catch(IOException e) {
+                // Losing the connection is handled once it's noticed in update()
+            }
+        }
+
         // --- GENERAL CODES ---
         // ping() is just here in case anything needs to be done on ping (and to keep the switch pattern)
         private void ping() {
@@ -180,18 +226,49 @@ public class GameState {
 
         private void connectionAccepted() {
             message = "Joined successfully!";
+            if(data.get("session") instanceof String) {
+                sessionToken = (String)data.get("session");
+            }
+            // A resumed round is picked back up with GAME_SNAPSHOT
+            roundInProgress = false;
+            resuming = false;
         }
 
         private void connectionDenied() {
+            if(resuming && game.retryResumeGame(sessionToken)) {
+                return;
+            }
+            resuming = false;
             message = "Error joining game: connection denied. Maybe the game is full or has already started?";
             game.showStartScreen();
         }
 
         private void playerDisconnected() {
             message = "[YELLOW]A player has disconnected!";
+            answerDeadline = 0;
+            roundInProgress = false;
             game.showLobbyScreen();
         }
 
+        private void playerAway() {
+            RenderablePlayer awayPlayer = getPlayerByPlayerNum((Integer)data.get("player"))
+                    .orElseThrow(() -> new InvalidServerPacketException(
+                            "playerAway() - No player found with player num "
+                                    + data.get("player")
+                                    + " sent by server for away player"));
+            message = "[YELLOW]" + awayPlayer.getName() + " lost their connection. Waiting up to "
+                    + ((Integer)data.get("timeleft") / 1000) + " seconds for them to come back...[]";
+        }
+
+        private void playerBack() {
+            RenderablePlayer backPlayer = getPlayerByPlayerNum((Integer)data.get("player"))
+                    .orElseThrow(() -> new InvalidServerPacketException(
+                            "playerBack() - No player found with player num "
+                                    + data.get("player")
+                                    + " sent by server for returning player"));
+            message = backPlayer.getName() + " is back!";
+        }
+
         private void couldNotStartGame() {
             message = "[YELLOW]Error: cannot start game. Either there aren't enough players or the game is already running.";
         }
@@ -231,6 +308,9 @@ public class GameState {
                             + clientPlayerNum
                             + " sent by server for host player"
             ));
+            if(!roundInProgress) {
+                snapshotRequested = false; // Outside of a round, this is all the snapshot there is
+            }
         }
 
         private void allPlayerPoints() {
@@ -243,6 +323,13 @@ public class GameState {
             updatedPlayer.setAccumulatedPoints((newPoints != null) ? newPoints : 0);
         }
 
+        // timeleft is only sent to players using Protocol.TURN_TIMERS or later, and only if the server has deadlines
+        private long readAnswerDeadline() {
+            return (data.get("timeleft") instanceof Integer)
+                    ? System.currentTimeMillis() + (Integer)data.get("timeleft")
+                    : 0;
+        }
+
         // --- TRICK CODES ---
         private void trickStart() {
             if(leadingPlayer != null && !pointCardsInTrick.isEmpty()) {
@@ -276,6 +363,21 @@ public class GameState {
         private void makePlay() {
             message = "It's your turn";
             turnPlayer = thisPlayer;
+            answerDeadline = readAnswerDeadline();
+
+            validPlays = null;
+            if(data.get("validplays") != null) {
+                CardSet sentValidPlays = new CardSet();
+                try {
+                    for(Object cardNum : (List<?>)data.get("validplays")) {
+                        sentValidPlays.add((Integer)cardNum);
+                    }
+                } catch(InvalidCardException e) {
+                    throw new InvalidServerPacketException("makePlay() - server sent invalid valid plays "
+                            + data.get("validplays"));
+                }
+                validPlays = sentValidPlays;
+            }
         }
 
         private void invalidPlay() {
@@ -307,9 +409,18 @@ public class GameState {
                 }
             });
             message = "Play successfully made.";
+            answerDeadline = 0;
         }
 
         private void waitForTurnPlayer() {
+            setTurnPlayer(getPlayerByPlayerNum((Integer)data.get("player"))
+                    .orElseThrow(() -> new InvalidServerPacketException(
+                            "waitForTurnPlayer() - No player found with player num "
+                                    + data.get("player")
+                                    + " sent by server for turn player")));
+        }
+
+        private void setTurnPlayer(RenderablePlayer newTurnPlayer) {
             if(turnPlayer != null) {
                 if(turnPlayer == leadingPlayer) {
                     turnPlayer.setNameColor(winningPlayColor);
@@ -318,11 +429,7 @@ public class GameState {
                 }
             }
 
-            turnPlayer = getPlayerByPlayerNum((Integer)data.get("player"))
-                    .orElseThrow(() -> new InvalidServerPacketException(
-                            "waitForTurnPlayer() - No player found with player num "
-                                    + data.get("player")
-                                    + " sent by server for turn player"));
+            turnPlayer = newTurnPlayer;
             turnPlayer.setNameColor(turnPlayerNameColor);
             message = "It's "
                     + "P" + turnPlayer.getPlayerNum() + ": " + turnPlayer.getColoredName()
@@ -342,8 +449,15 @@ public class GameState {
             } catch(InvalidCardException e) {
                 throw new InvalidServerPacketException("waitForNewPlay() - server sent invalid card num " + data.get("play"));
             }
+            setNewPlay(newPlayPlayer, newPlay);
+        }
 
+        private void setNewPlay(RenderablePlayer newPlayPlayer, RenderableHeartsCard newPlay) {
             newPlayPlayer.clearPlay(); // newPlayPlayer.play should already be null but clear just in case
+            if(newPlayPlayer == thisPlayer) {
+                // The server ran out of time waiting for this player and played for them
+                answerDeadline = 0;
+            }
             boolean newPlayIsBasePlay = Arrays.stream(players).noneMatch(player -> player.getPlay().isPresent());
             newPlayPlayer.setPlay(newPlay);
             if(newPlayIsBasePlay) {
@@ -359,17 +473,21 @@ public class GameState {
         }
 
         private void waitForLeadingPlayer() {
+            setLeadingPlayer(getPlayerByPlayerNum((Integer)data.get("player"))
+                    .orElseThrow(() -> new InvalidServerPacketException(
+                            "waitForLeadingPlayer() - No player found with player num "
+                                    + data.get("player")
+                                    + " sent by server for leading player"
+                    )));
+        }
+
+        private void setLeadingPlayer(RenderablePlayer newLeadingPlayer) {
             if(leadingPlayer != null) {
                 leadingPlayer.getPlay().ifPresent(c -> c.entity.resetFaceBackgroundColor());
                 leadingPlayer.clearNameColor();
             }
 
-            leadingPlayer = getPlayerByPlayerNum((Integer)data.get("player"))
-                    .orElseThrow(() -> new InvalidServerPacketException(
-                            "waitForLeadingPlayer() - No player found with player num "
-                                    + data.get("player")
-                                    + " sent by server for leading player"
-                    ));
+            leadingPlayer = newLeadingPlayer;
             leadingPlayer.getPlay().ifPresent(c -> c.entity.setFaceBackgroundColor(winningPlayColor));
             leadingPlayer.setNameColor(winningPlayColor);
         }
@@ -386,6 +504,48 @@ public class GameState {
                     + " points";
         }
 
+        // Does everything WAIT_FOR_NEW_PLAY (or SUCCESSFUL_PLAY, for this player's own play), WAIT_FOR_LEADING_PLAYER
+        // and WAIT_FOR_TURN_PLAYER would. Every field is checked before anything is changed, so a bad packet can't
+        // leave the trick half updated.
+        private void playResolved() {
+            RenderablePlayer playingPlayer = getPlayerByPlayerNum((Integer)data.get("player"))
+                    .orElseThrow(() -> new InvalidServerPacketException(
+                            "playResolved() - No player found with player num "
+                                    + data.get("player")
+                                    + " sent by server for playing player"));
+            RenderablePlayer newLeadingPlayer = getPlayerByPlayerNum((Integer)data.get("leader"))
+                    .orElseThrow(() -> new InvalidServerPacketException(
+                            "playResolved() - No player found with player num "
+                                    + data.get("leader")
+                                    + " sent by server for leading player"));
+            // turn is left out when the play ended the trick
+            Optional<RenderablePlayer> newTurnPlayer = Optional.empty();
+            if(data.get("turn") != null) {
+                newTurnPlayer = Optional.of(getPlayerByPlayerNum((Integer)data.get("turn"))
+                        .orElseThrow(() -> new InvalidServerPacketException(
+                                "playResolved() - No player found with player num "
+                                        + data.get("turn")
+                                        + " sent by server for turn player")));
+            }
+            RenderableHeartsCard newPlay = null;
+            if(playingPlayer != thisPlayer) {
+                try {
+                    newPlay = new RenderableHeartsCard((Integer)data.get("play"));
+                } catch(InvalidCardException e) {
+                    throw new InvalidServerPacketException("playResolved() - server sent invalid card num "
+                            + data.get("play"));
+                }
+            }
+
+            if(newPlay == null) {
+                successfulPlay();
+            } else {
+                setNewPlay(playingPlayer, newPlay);
+            }
+            setLeadingPlayer(newLeadingPlayer);
+            newTurnPlayer.ifPresent(this::setTurnPlayer);
+        }
+
         // --- ROUND CODES ---
         private void roundStart() {
             Arrays.stream(players).filter(Objects::nonNull).forEach(RenderablePlayer::clearCards);
@@ -394,11 +554,13 @@ public class GameState {
             heartsBroke = false;
             pointCardsInTrick.clear();
             message = "";
+            answerDeadline = 0;
 
             warheadMap.clear();
             warheadMap.putAll((HashMap<Integer, Integer>)data.get("warheadmap"));
 
             lastWarheads.clear();
+            roundInProgress = true;
 
             int[] playerOrder = (int[])data.get("playerorder");
             RenderablePlayer[] newPlayerArr = new RenderablePlayer[players.length];
@@ -426,6 +588,7 @@ public class GameState {
             } catch(InvalidCardException e) {
                 throw new InvalidServerPacketException("waitForHand() - Server sent an invalid card num for a card in hand");
             }
+            newHand.sort(HeartsCard::compareTo); // The hand is sent as a set, so it arrives in card num order
             thisPlayerHand.clear();
             thisPlayerHand.addAll(newHand);
         }
@@ -440,6 +603,7 @@ public class GameState {
             receivingPlayer.setNameColor(warheadReceiverNameColor);
             message = "Select 3 cards to send to "
                     + receivingPlayer.getColoredName();
+            answerDeadline = readAnswerDeadline();
         }
 
         private void invalidWarheads() {
@@ -458,6 +622,7 @@ public class GameState {
                     ));
             message = "Cards successfully sent to "
                     + receivingPlayer.getColoredName();
+            answerDeadline = 0;
         }
 
         private void waitForWarheads() {
@@ -504,10 +669,77 @@ public class GameState {
                 });
             }
 
+            roundInProgress = false;
             game.startTitleTimer();
         }
 
+        // Sent after this player gets back into a round they dropped out of, or asks for a snapshot. Anything the
+        // server is still waiting on from this player, it asks for again right after.
+        private void gameSnapshot() {
+            roundStart();
+            waitForHand();
+
+            for(Map.Entry<Integer, Integer> taken : ((Map<Integer, Integer>)data.get("taken")).entrySet()) {
+                RenderablePlayer takingPlayer = getPlayerByPlayerNum(taken.getValue())
+                        .orElseThrow(() -> new InvalidServerPacketException(
+                                "gameSnapshot() - No player found with player num "
+                                        + taken.getValue()
+                                        + " sent by server for a player who took points"));
+                try {
+                    takingPlayer.collectedPointCards.add(new RenderableHeartsCard(taken.getKey()));
+                } catch(InvalidCardException e) {
+                    throw new InvalidServerPacketException("gameSnapshot() - server sent invalid card num "
+                            + taken.getKey());
+                }
+            }
+            Arrays.stream(players).forEach(player -> player.collectedPointCards.sort(HeartsCard::compareTo));
+            heartsBroke = (Boolean)data.get("heartsbroke");
+
+            // The trick's plays were made by the players seated just after the turn player, so going around the table
+            // from there puts them back in the order they were made
+            Map<Integer, Integer> plays = (Map<Integer, Integer>)data.get("plays");
+            Optional<RenderablePlayer> newTurnPlayer = getPlayerByPlayerNum((Integer)data.get("turn"));
+            int turnIdx = newTurnPlayer.map(player -> Arrays.asList(players).indexOf(player)).orElse(0);
+            for(int i = 1; i < players.length; i++) {
+                RenderablePlayer playingPlayer = players[(turnIdx + i) % players.length];
+                if(plays.containsKey(playingPlayer.getPlayerNum())) {
+                    try {
+                        setNewPlay(playingPlayer, new RenderableHeartsCard(plays.get(playingPlayer.getPlayerNum())));
+                    } catch(InvalidCardException e) {
+                        throw new InvalidServerPacketException("gameSnapshot() - server sent invalid card num "
+                                + plays.get(playingPlayer.getPlayerNum()));
+                    }
+                }
+            }
+            getPlayerByPlayerNum((Integer)data.get("leader")).ifPresent(this::setLeadingPlayer);
+            newTurnPlayer.ifPresent(this::setTurnPlayer);
+            if(!newTurnPlayer.isPresent()) {
+                message = "Waiting for everyone's cards...";
+            }
+            snapshotRequested = false;
+        }
+
+        // The round this player thought was running is already over, so there's nothing to resume or resync
+        private void noRound() {
+            snapshotRequested = false;
+            if(roundInProgress) {
+                roundInProgress = false;
+                answerDeadline = 0;
+                game.showLobbyScreen();
+            }
+        }
+
         private void lostConnectionToServer() {
+            answerDeadline = 0;
+            if(resuming && game.retryResumeGame(sessionToken)) {
+                return;
+            }
+            if(roundInProgress && sessionToken != null && !resuming) {
+                message = "[YELLOW]The connection to the host has been lost. Trying to get back in...[]";
+                resuming = true;
+                game.resumeGame(sessionToken);
+                return;
+            }
             message = "The connection to the host has been lost.";
             game.showStartScreen();
         }
@@ -563,6 +795,11 @@ public class GameState {
                     .collect(Collectors.toCollection(RenderableCardList::new));
             if(selectedCards.size() == 1) {
                 RenderableHeartsCard card = selectedCards.get(0);
+                if(validPlays != null && !validPlays.contains(card)) {
+                    // The server would only answer with INVALID_PLAY, so there's no need to ask it
+                    message = "[YELLOW]Invalid play - you can't play that card right now[]";
+                    return;
+                }
                 ClientPacket packet = new ClientPacket(ClientCode.PLAY);
                 packet.data.put("play", card.getCardNum());
                 try {
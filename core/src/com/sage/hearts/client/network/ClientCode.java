@@ -1,14 +1,34 @@
 package com.sage.hearts.client.network;
 
 import com.sage.hearts.utils.network.NetworkCode;
+import com.sage.hearts.utils.network.PacketField;
+
+import static com.sage.hearts.utils.network.PacketField.*;
 
 public enum ClientCode implements NetworkCode {
     PING,
     START_GAME,
-    PLAY,
-    WARHEADS,
-    NAME,
-    PLAYER_POINTS_CHANGE,
-    RESET_PLAYER_POINTS,
-    SHUFFLE_PLAYERS
+    PLAY(cardField("play")),
+    WARHEADS(cardSetField("warheads")),
+    NAME(stringField("name")),
+    PLAYER_POINTS_CHANGE(intField("player"), intField("pointschange")),
+    RESET_PLAYER_POINTS(intField("player")),
+    SHUFFLE_PLAYERS,
+    JOIN_TABLE(intField("table")),
+    PROTOCOL(intField("version")),
+    ADD_BOT,
+    REMOVE_BOT,
+    RESUME(stringField("session")), // Sent instead of JOIN_TABLE to get back into the seat the session belongs to
+    REQUEST_SNAPSHOT; // Answered with WAIT_FOR_PLAYERS, then GAME_SNAPSHOT if a round is running or NO_ROUND if not
+
+    private final PacketField[] fields;
+
+    ClientCode(PacketField... fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public PacketField[] getFields() {
+        return fields;
+    }
 }
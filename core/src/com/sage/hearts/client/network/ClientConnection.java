@@ -6,7 +6,10 @@ import com.badlogic.gdx.net.Socket;
 import com.badlogic.gdx.net.SocketHints;
 import com.badlogic.gdx.utils.SerializationException;
 import com.sage.hearts.client.HeartsGame;
+import com.sage.hearts.server.network.ServerCode;
 import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.utils.network.PacketCodec;
+import com.sage.hearts.utils.network.Protocol;
 
 import java.io.*;
 import java.util.Optional;
@@ -25,6 +28,10 @@ public class ClientConnection extends Thread {
 
     private final Queue<ServerPacket> packetQueue = new LinkedBlockingQueue<>();
 
+    // Every server understands LEGACY, so that's what is spoken until the server agrees to something else
+    private volatile PacketCodec<ClientPacket> outboundCodec = ClientPacket.LEGACY_CODEC;
+    private volatile int protocolVersion = Protocol.LEGACY;
+
     private volatile boolean quit = false;
 
     public ClientConnection(String serverIP, int port, String playerName, HeartsGame game) {
@@ -49,7 +56,15 @@ public class ClientConnection extends Thread {
             ServerPacket packet;
             try {
                 int packetSize = input.readInt();
-                packet = ServerPacket.fromBytes(input.readNBytes(packetSize));
+                packet = ServerPacket.decode(input.readNBytes(packetSize));
+                if(packet.networkCode == ServerCode.PROTOCOL_SELECTED) {
+                    protocolSelected(packet);
+                    continue;
+                }
+                if(packet.networkCode == ServerCode.CONNECTION_ACCEPTED
+                        && packet.data.get("protocol") instanceof Integer) {
+                    requestProtocol((Integer)packet.data.get("protocol"));
+                }
                 packetQueue.add(packet);
             } catch(IOException e) {
                 quit();
@@ -61,16 +76,40 @@ public class ClientConnection extends Thread {
         }
     }
 
+    // Servers that don't send a protocol in CONNECTION_ACCEPTED predate the handshake and only speak LEGACY
+    private void requestProtocol(int serverProtocol) {
+        ClientPacket protocolPacket = new ClientPacket(ClientCode.PROTOCOL);
+        protocolPacket.data.put("version", Protocol.select(serverProtocol));
+        try {
+            sendPacket(protocolPacket);
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void protocolSelected(ServerPacket packet) {
+        protocolVersion = (packet.data.get("version") instanceof Integer)
+                ? (Integer)packet.data.get("version")
+                : Protocol.LEGACY;
+        outboundCodec = (protocolVersion >= Protocol.BINARY) ? ClientPacket.BINARY_CODEC : ClientPacket.LEGACY_CODEC;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
     public void quit() {
         quit = true;
         socket.dispose();
     }
 
     public void sendPacket(ClientPacket packet) throws IOException {
-        byte[] packetBytes = packet.toBytes();
-        output.writeInt(packetBytes.length);
-        output.write(packetBytes);
-        output.flush();
+        byte[] packetBytes = outboundCodec.encode(packet);
+        synchronized(output) { // The handshake is answered from the reader thread, so sends can come from two threads
+            output.writeInt(packetBytes.length);
+            output.write(packetBytes);
+            output.flush();
+        }
     }
 
     public Optional<ServerPacket> getPacket() throws LostConnectionToServerException {
@@ -1,9 +1,19 @@
 package com.sage.hearts.client.network;
 
 import com.badlogic.gdx.utils.SerializationException;
+import com.sage.hearts.utils.network.BinaryPacketCodec;
 import com.sage.hearts.utils.network.Packet;
+import com.sage.hearts.utils.network.PacketCodec;
+import com.sage.hearts.utils.network.SerializationPacketCodec;
 
 public class ClientPacket extends Packet<ClientCode> {
+    // Pinned to the value Java computed before the codecs existed, so older versions can still read legacy packets
+    private static final long serialVersionUID = 5875439582431769808L;
+
+    public static final PacketCodec<ClientPacket> LEGACY_CODEC = new SerializationPacketCodec<>(ClientPacket.class);
+    public static final PacketCodec<ClientPacket> BINARY_CODEC =
+            new BinaryPacketCodec<>(ClientCode.class, ClientPacket::new);
+
     public ClientPacket() {
         super();
     }
@@ -20,6 +30,15 @@ public class ClientPacket extends Packet<ClientCode> {
         }
     }
 
+    // Frames are decoded according to their first byte, so neither side needs to know when the other switched codecs
+    public static ClientPacket decode(byte[] frame) throws SerializationException {
+        if(frame.length > 0 && frame[0] == BinaryPacketCodec.FRAME_MARKER) {
+            return BINARY_CODEC.decode(frame);
+        } else {
+            return LEGACY_CODEC.decode(frame);
+        }
+    }
+
     public static ClientPacket pingPacket() {
         return new ClientPacket(ClientCode.PING);
     }
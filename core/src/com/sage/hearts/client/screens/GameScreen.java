@@ -33,6 +33,8 @@ public class GameScreen implements Screen, InputProcessor {
     private GameState gameState;
     private ClientConnection client;
 
+    // Once a card is drawn, the card shader stays set on this batch. It draws everything else as usual, except for
+    // sprites drawn from raw vertices with an odd alpha, which it takes for cards.
     private SpriteBatch batch = new SpriteBatch();
     private Viewport viewport;
     private float viewportScale = 5f;
@@ -153,10 +155,13 @@ public class GameScreen implements Screen, InputProcessor {
         viewport.apply(true);
         batch.setProjectionMatrix(viewport.getCamera().combined);
 
+        client = game.getClientConnection(); // The connection is replaced if the game had to be resumed
         delayCounter += delta;
         if(delayCounter >= updateDelay && gameState.update(client)) {
             updateUiElementsFromGameState();
             delayCounter = 0;
+        } else if(gameState.getMillisLeftToAnswer() >= 0) {
+            updateMessageLabelFromUI(); // Keeps the countdown ticking
         }
 
         handleInputs();
@@ -247,7 +252,10 @@ public class GameScreen implements Screen, InputProcessor {
     }
 
     private void updateMessageLabelFromUI() {
-        messageLabel.setText(gameState.message);
+        long millisLeft = gameState.getMillisLeftToAnswer();
+        messageLabel.setText((millisLeft < 0)
+                ? gameState.message
+                : gameState.message + "\n(" + ((millisLeft + 999) / 1000) + "s left)");
     }
 
     private void setActionButtonFromServerCode(ServerCode code) {
@@ -303,6 +311,7 @@ public class GameScreen implements Screen, InputProcessor {
         case WAIT_FOR_TURN_PLAYER:
         case WAIT_FOR_HAND:
         case WAIT_FOR_NEW_PLAY:
+        case PLAY_RESOLVED:
             disableButton(actionButton);
             actionButton.setText("");
             // --- FALL THROUGH ---
@@ -22,6 +22,7 @@ import com.sage.hearts.client.game.GameState;
 import com.sage.hearts.client.network.ClientCode;
 import com.sage.hearts.client.network.ClientConnection;
 import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.utils.network.Protocol;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -60,6 +61,9 @@ public class LobbyScreen implements Screen, InputProcessor {
 
     private final Color hostColor = new Color(1f, 1f, 0f, 1f);
 
+    // The protocol is usually picked after the first players list arrives, so the bot buttons may show up late
+    private boolean botsSupported = false;
+
     private boolean quitConfirmationFlag = false;
     private Timer quitConfirmationTimer = new Timer();
     private float quitConfirmationDelay = 3;
@@ -197,7 +201,8 @@ public class LobbyScreen implements Screen, InputProcessor {
 
     @Override
     public void render(float delta) {
-        if(gameState.update(client)) {
+        boolean botsSupportChanged = botsSupported != (client.getProtocolVersion() >= Protocol.BOTS);
+        if(gameState.update(client) || botsSupportChanged) {
             updateUIFromGameState();
         }
         stage.act(delta);
@@ -217,7 +222,10 @@ public class LobbyScreen implements Screen, InputProcessor {
         var pCallRankHeaderLabel = new Label("POINTS", labelStyle);
         pNameHeaderLabel.setAlignment(Align.center);
 
+        botsSupported = client.getProtocolVersion() >= Protocol.BOTS;
         TextButton shufflePlayersButton = null;
+        TextButton addBotButton = null;
+        TextButton removeBotButton = null;
         if(gameState.thisPlayer != null && gameState.thisPlayer.isHost()) {
             shufflePlayersButton = new TextButton("Shuffle players", textButtonStyle);
             shufflePlayersButton.addListener(new ClickListener(Input.Buttons.LEFT) {
@@ -226,6 +234,24 @@ public class LobbyScreen implements Screen, InputProcessor {
                     requestPlayerShuffle();
                 }
             });
+
+            if(botsSupported) {
+                addBotButton = new TextButton("Add bot", textButtonStyle);
+                addBotButton.addListener(new ClickListener(Input.Buttons.LEFT) {
+                    @Override
+                    public void clicked(InputEvent event, float x, float y) {
+                        requestBotChange(ClientCode.ADD_BOT);
+                    }
+                });
+
+                removeBotButton = new TextButton("Remove bot", textButtonStyle);
+                removeBotButton.addListener(new ClickListener(Input.Buttons.LEFT) {
+                    @Override
+                    public void clicked(InputEvent event, float x, float y) {
+                        requestBotChange(ClientCode.REMOVE_BOT);
+                    }
+                });
+            }
         }
 
         playersListTable.clearChildren();
@@ -309,6 +335,12 @@ public class LobbyScreen implements Screen, InputProcessor {
             }
         });
 
+        if(addBotButton != null) {
+            playersListTable.row().padTop(viewport.getWorldHeight() * 0.02f);
+            playersListTable.add(addBotButton).colspan(2);
+            playersListTable.add(removeBotButton).padLeft(groupSpacing).colspan(2);
+        }
+
         playersListTable.invalidate();
 
         if(gameState.thisPlayer != null && gameState.thisPlayer.isHost()) {
@@ -358,6 +390,15 @@ public class LobbyScreen implements Screen, InputProcessor {
         }
     }
 
+    // code is either ADD_BOT or REMOVE_BOT
+    private void requestBotChange(ClientCode code) {
+        try {
+            client.sendPacket(new ClientPacket(code));
+        } catch(IOException e) {
+            messageLabel.setText("[YELLOW]Error connecting to server. Maybe you lost connection?");
+        }
+    }
+
     @Override
     public void resize(int width, int height) {
         viewport.update(width, height, true);
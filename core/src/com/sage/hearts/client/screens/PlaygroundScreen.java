@@ -30,6 +30,8 @@ public class PlaygroundScreen implements Screen, InputProcessor {
     public PlaygroundScreen(HeartsGame game) {
         this.game = game;
         viewport = new ExtendViewport(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+        // Cards leave the card shader set on the batch, which takes sprites drawn from raw vertices with an odd alpha
+        // for cards
         batch = new SpriteBatch();
         test.entity().setOriginToCenter().setSelectable(true);
     }
@@ -0,0 +1,68 @@
+package com.sage.hearts.server;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Runs tasks one at a time, in the order they were submitted, on threads borrowed from a shared executor. Every event
+// at a table runs on the table's own SerialExecutor, so the table never handles two events at once, but a table with
+// nothing to do doesn't hold on to a thread.
+public class SerialExecutor implements Executor {
+    // A busy table gives its thread back after this many tasks, so it can't starve the tables sharing the executor
+    private static final int MAX_TASKS_PER_TURN = 64;
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean scheduled = false;
+
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        synchronized(tasks) {
+            tasks.add(task);
+            if(scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        try {
+            executor.execute(this::runTasks);
+        } catch(RejectedExecutionException e) {
+            // The executor has been shut down along with the server, so nothing else will run here
+            synchronized(tasks) {
+                tasks.clear();
+                scheduled = false;
+            }
+        }
+    }
+
+    private void runTasks() {
+        for(int i = 0; i < MAX_TASKS_PER_TURN; i++) {
+            Runnable task;
+            synchronized(tasks) {
+                task = tasks.poll();
+                if(task == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } catch(RuntimeException e) {
+                e.printStackTrace();
+            } catch(Error e) {
+                // The remaining tasks are still run, or the table would never handle another event
+                schedule();
+                throw e;
+            }
+        }
+        schedule();
+    }
+}
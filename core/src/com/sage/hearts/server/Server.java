@@ -5,39 +5,70 @@ import com.badlogic.gdx.Net;
 import com.badlogic.gdx.net.NetJavaServerSocketImpl;
 import com.badlogic.gdx.net.ServerSocketHints;
 import com.badlogic.gdx.utils.GdxRuntimeException;
-import com.badlogic.gdx.utils.SerializationException;
 import com.sage.hearts.client.network.ClientCode;
-import com.sage.hearts.server.game.*;
-import com.sage.hearts.server.network.MultiplePlayersDisconnectedException;
-import com.sage.hearts.server.network.PlayerDisconnectedException;
-import com.sage.hearts.server.network.ServerCode;
-import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.game.Player;
+import com.sage.hearts.server.network.PlayerConnection;
+import com.sage.hearts.server.network.SelectorTransport;
+import com.sage.hearts.server.network.SocketPlayerConnection;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class Server extends Thread {
     private static final long PRUNE_PERIOD = 1000; // In seconds
     public static final int MAX_PLAYER_NAME_LENGTH = 16;
+    public static final int DEFAULT_TABLE_ID = 0;
 
     public final int port;
+    private final ServerOptions options;
+    private final Executor executor;
+    private final ScheduledExecutorService tableScheduler;
 
-    private final GameState gameState = new GameState();
+    // Every table shares this server's listening socket. Players are routed to a table by the first packet they send.
+    private final Map<Integer, Table> tables = new HashMap<>();
 
-    private volatile boolean startRoundFlag = false; // This flag is set by the player communication thread
-    private final Object startRoundObj = new Object();
-
-    private Player host = null;
+    // Exactly one of these is used, depending on options.useSelectorTransport
     private NetJavaServerSocketImpl serverSocket;
+    private SelectorTransport selectorTransport;
 
     private volatile boolean closed = false;
 
     public Server(int port) {
+        this(port, new ServerOptions());
+    }
+
+    public Server(int port, ServerOptions options) {
         this.port = port;
+        this.options = options;
+        this.executor = options.useSharedExecutor ? createSharedExecutor() : Server::startDaemonThread;
+        this.tableScheduler = Executors.newScheduledThreadPool(Math.max(1, options.tableThreads), runnable -> {
+            Thread thread = new Thread(runnable, "Table events");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        ServerSocketHints hints = new ServerSocketHints();
-        hints.acceptTimeout = 0;
-        serverSocket = new NetJavaServerSocketImpl(Net.Protocol.TCP, port, hints);
+        if(options.useSelectorTransport) {
+            try {
+                selectorTransport = new SelectorTransport(port, options.ioThreads, options.maxQueuedBytes,
+                        options.overflowPolicy, this::connectionAccepted);
+            } catch(IOException e) {
+                throw new GdxRuntimeException("Cannot create a server socket on port " + port + ".", e);
+            }
+        } else {
+            ServerSocketHints hints = new ServerSocketHints();
+            hints.acceptTimeout = 0;
+            serverSocket = new NetJavaServerSocketImpl(Net.Protocol.TCP, port, hints);
+        }
 
         setDaemon(true);
         Runtime.getRuntime().addShutdownHook(new Thread(this::close));
@@ -45,198 +76,159 @@ public class Server extends Thread {
 
     @Override
     public void run() {
-        Thread connectionAcceptorThread = new Thread(connectionAcceptor);
-        connectionAcceptorThread.start();
-
         Timer pruneDisconnectedPlayersTimer = new Timer();
         pruneDisconnectedPlayersTimer.scheduleAtFixedRate(pruneDisconnectedPlayersTask, PRUNE_PERIOD, PRUNE_PERIOD);
 
-        while(!closed) {
-            if(startRoundFlag) {
-                if(closed) {
-                    break;
-                } else {
-                    playRound();
-                }
-            }
-            try {
-                synchronized(startRoundObj) {
-                    startRoundObj.wait();
-                }
-            } catch(InterruptedException e) {
-                e.printStackTrace();
-            }
+        if(selectorTransport != null) {
+            selectorTransport.run();
+        } else {
+            connectionAcceptor.run();
         }
 
         try {
-            serverSocket.dispose();
+            closeServerSocket();
         } catch(GdxRuntimeException e) {
             Gdx.app.log("Server.run()", "Encountered GdxRuntimeException when trying to dispose of socket");
         }
         pruneDisconnectedPlayersTimer.cancel();
     }
 
-    private void playRound() {
-        try {
-            RoundRunner.playRound(gameState);
-        } catch(PlayerDisconnectedException | MultiplePlayersDisconnectedException e) {
-            gameState.removeDisconnectedPlayers();
-            try {
-                gameState.getPlayers().sendPacketToAll(new ServerPacket(ServerCode.PLAYER_DISCONNECTED));
-            } catch(MultiplePlayersDisconnectedException e1) {
-                gameState.removeDisconnectedPlayers();
-            }
-        } catch(RoundStartFailedException e) {
-            host.sendPacket(new ServerPacket(ServerCode.COULD_NOT_START_GAME));
-        } finally {
-            sendPlayersToAllUntilNoDisconnections();
-            startRoundFlag = false;
-        }
+    private void connectionAccepted(PlayerConnection connection) {
+        Player newPlayer = new Player(0, connection);
+        setUnseatedPacketHandlersForPlayer(newPlayer);
+        newPlayer.startReceivingPackets();
     }
 
-    private void sendPlayersToAllUntilNoDisconnections() {
-        while(true) {
-            try {
-                gameState.getPlayers().sendPlayersToAll();
-            } catch(MultiplePlayersDisconnectedException e1) {
-                if(gameState.removeDisconnectedPlayers()) {
-                    continue;
+    // Until a player has been seated, every packet they send is handled here. JOIN_TABLE seats the player at the
+    // requested table, and RESUME puts a player who dropped mid-round back in their seat. Any other packet seats the
+    // player at the default table and is then handled by that table.
+    private void setUnseatedPacketHandlersForPlayer(Player player) {
+        for(ClientCode code : ClientCode.values()) {
+            player.setInitialPacketHandlerForCode(code, packet -> {
+                if(code == ClientCode.JOIN_TABLE) {
+                    int tableId = (packet.data.get("table") instanceof Integer)
+                            ? (Integer)packet.data.get("table")
+                            : DEFAULT_TABLE_ID;
+                    seatPlayer(player, tableId);
+                    return false;
                 }
-            }
-            break;
+                if(code == ClientCode.RESUME) {
+                    resumePlayer(player, packet);
+                    return false;
+                }
+
+                if(!seatPlayer(player, DEFAULT_TABLE_ID)) {
+                    return false;
+                }
+                return player.getInitialPacketHandlerForCode(code)
+                        .map(handler -> handler.handle(packet))
+                        .orElse(true);
+            });
         }
     }
 
-    private void setInitialPacketHandlersForPlayer(Player player) {
-        player.setInitialPacketHandlerForCode(ClientCode.NAME, packet -> {
-            if(packet.data.get("name") instanceof String && !gameState.isRoundRunning()) {
-                String sentName = (String)packet.data.get("name");
-                player.setName(sentName.substring(0, Math.min(sentName.length(), MAX_PLAYER_NAME_LENGTH)));
-                sendPlayersToAllUntilNoDisconnections();
-            } else {
-                player.sendPacket(new ServerPacket(ServerCode.UNSUCCESSFUL_NAME_CHANGE));
-            }
-            return false; // This packet does not need to be put into the player's packetQueue
-        });
-
-        player.setInitialPacketHandlerForCode(ClientCode.START_GAME, packet -> {
-            if(player == host && !startRoundFlag) {
-                startRoundFlag = true; // This simply requests the round runner thread to start; it does not force the round to start
-                synchronized(startRoundObj) {
-                    startRoundObj.notify();
+    private boolean seatPlayer(Player player, int tableId) {
+        Table table;
+        synchronized(tables) {
+            table = tables.get(tableId);
+            if(table == null) {
+                if(closed || tables.size() >= options.maxTables) {
+                    Table.sendConnectionDenied(player);
+                    player.resetInitialPacketHandlers();
+                    setUnseatedPacketHandlersForPlayer(player);
+                    return false;
                 }
-            } else {
-                player.sendPacket(new ServerPacket(ServerCode.COULD_NOT_START_GAME));
+                table = new Table(tableId, options, tableScheduler);
+                tables.put(tableId, table);
             }
-            return false; // This packet does not need to be put into the player's packetQueue
-        });
-
-        player.setInitialPacketHandlerForCode(ClientCode.PLAYER_POINTS_CHANGE, packet -> {
-            if(packet.data.get("player") instanceof Integer
-                    && packet.data.get("pointschange") instanceof Integer
-                    && player == host) {
-                gameState.getPlayers().getByPlayerNum((Integer)packet.data.get("player")).ifPresent(p -> {
-                    p.incrementPointsOffset((Integer)packet.data.get("pointschange"));
-                    ServerPacket newPlayerPointsPacket = new ServerPacket(ServerCode.NEW_PLAYER_POINTS);
-                    newPlayerPointsPacket.data.put("player", p.getPlayerNum());
-                    newPlayerPointsPacket.data.put("points", p.getAccumulatedPoints());
-                    sendPacketToAllAndHandleDisconnections(newPlayerPointsPacket);
-                });
+            if(!table.seatPlayer(player)) {
+                // The player may try again with a different table
+                player.resetInitialPacketHandlers();
+                setUnseatedPacketHandlersForPlayer(player);
+                return false;
             }
-            return false;
-        });
+        }
+        table.sendPlayersToAllUntilNoDisconnections();
+        return true;
+    }
 
-        player.setInitialPacketHandlerForCode(ClientCode.RESET_PLAYER_POINTS, packet -> {
-            if(packet.data.get("player") instanceof Integer && player == host) {
-                gameState.getPlayers().getByPlayerNum((Integer)packet.data.get("player")).ifPresent(p -> {
-                    p.setPointsOffset(0);
-                    ServerPacket newPlayerPointsPacket = new ServerPacket(ServerCode.NEW_PLAYER_POINTS);
-                    newPlayerPointsPacket.data.put("player", p.getPlayerNum());
-                    newPlayerPointsPacket.data.put("points", p.getAccumulatedPoints());
-                    sendPacketToAllAndHandleDisconnections(newPlayerPointsPacket);
-                });
+    private void resumePlayer(Player player, ClientPacket packet) {
+        if(packet.data.get("session") instanceof String) {
+            // Resuming sends packets, so it's done outside of the tables lock
+            List<Table> openTables;
+            synchronized(tables) {
+                openTables = new ArrayList<>(tables.values());
             }
-            return false;
-        });
-
-        player.setInitialPacketHandlerForCode(ClientCode.SHUFFLE_PLAYERS, packet -> {
-            if(player == host) {
-                try {
-                    gameState.shufflePlayers();
-                } catch(RoundIsRunningException e) {
-                    return false;
+            for(Table table : openTables) {
+                if(table.resumePlayer(player, (String)packet.data.get("session"))) {
+                    return;
                 }
-                gameState.getPlayers().squashPlayerNums();
-                sendPlayersToAllUntilNoDisconnections();
             }
-            return false;
-        });
-
-        player.setInitialPacketHandlerForCode(ClientCode.PING, packet -> false);
+        }
+        Table.sendConnectionDenied(player);
     }
 
-    private void sendPacketToAllAndHandleDisconnections(ServerPacket packet) {
-        try {
-            gameState.getPlayers().sendPacketToAll(packet);
-        } catch(MultiplePlayersDisconnectedException e) {
-            gameState.removeDisconnectedPlayers();
-            sendPlayersToAllUntilNoDisconnections();
+    public int numTables() {
+        synchronized(tables) {
+            return tables.size();
         }
     }
-    
+
     public void close() {
         try {
-            // We drop every player connection which should (?) make RoundRunner.playRound() throw a PlayerDisconnectedException.
-            // When the main server loop repeats, it will query the value of closed and will exit.
-            gameState.getPlayers().forEach(Player::dropConnection);
             closed = true;
-
-            // We need to notify startRoundObj in case the server is currently waiting for the round to start
-            synchronized(startRoundObj) {
-                startRoundObj.notify();
+            synchronized(tables) {
+                tables.values().forEach(Table::close);
+                tables.clear();
             }
         } finally {
+            tableScheduler.shutdown();
+            if(executor instanceof ExecutorService) {
+                ((ExecutorService)executor).shutdown();
+            }
             try { // No matter what, serverSocket should be disposed
-                serverSocket.dispose();
+                closeServerSocket();
             } catch(GdxRuntimeException e) {
                 Gdx.app.log("Server.close()", "Encountered GdxRuntimeException when trying to dispose of socket");
             }
         }
     }
 
+    // A cached pool reuses the threads of players who have left, but still needs a thread for every connected player
+    private static ExecutorService createSharedExecutor() {
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Server worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void startDaemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void closeServerSocket() {
+        if(selectorTransport != null) {
+            selectorTransport.close();
+        } else {
+            serverSocket.dispose();
+        }
+    }
+
     Runnable connectionAcceptor = new Runnable() {
         @Override
         public void run() {
             while(!closed) {
-                Player newPlayer;
+                PlayerConnection connection;
                 try {
-                    newPlayer = new Player(gameState.getPlayers().size(), serverSocket.accept(null));
-
-                    // If round is started, we can immediately end the connection
-                    if(gameState.isRoundRunning() || gameState.getPlayers().size() == GameState.NUM_PLAYERS_TO_START) {
-                        newPlayer.sendPacket(new ServerPacket(ServerCode.CONNECTION_DENIED));
-                    }
-                } catch(GdxRuntimeException | SerializationException | PlayerDisconnectedException e) {
+                    connection = new SocketPlayerConnection(serverSocket.accept(null), executor,
+                            options.maxQueuedBytes, options.overflowPolicy);
+                } catch(GdxRuntimeException e) {
                     continue;
                 }
-
-                if(host == null) {
-                    host = newPlayer;
-                    host.setHost(true);
-                }
-                newPlayer.setPlayerNum(gameState.getPlayers().size());
-                setInitialPacketHandlersForPlayer(newPlayer);
-                try {
-                    gameState.addPlayer(newPlayer);
-                    newPlayer.sendPacket(new ServerPacket(ServerCode.CONNECTION_ACCEPTED));
-                } catch(RoundIsRunningException e) {
-                    // If gameState.addPlayer throws a RoundIsRunningException, the new player will not be added
-                    newPlayer.sendPacket(new ServerPacket(ServerCode.CONNECTION_DENIED));
-                } catch(SerializationException | PlayerDisconnectedException e) {
-                    // If a PlayerDisconnectedException is encountered here, the call to
-                    // sendPlayersToAllUntilNoDisconnections will remove newPlayer from the player list
-                }
-                sendPlayersToAllUntilNoDisconnections();
+                connectionAccepted(connection);
             }
         }
     };
@@ -244,12 +236,21 @@ public class Server extends Thread {
     private TimerTask pruneDisconnectedPlayersTask = new TimerTask() {
         @Override
         public void run() {
-            // We don't need a timeout on this lock because it doesn't need to run while the round is running.
-            // We need to tryLock() instead of lock() because the Timer will try to catch up with missed executions.
-            if(!gameState.isRoundRunning()) {
-                if(gameState.removeDisconnectedPlayers()) {
-                    sendPlayersToAllUntilNoDisconnections();
-                }
+            // Pruning sends packets, so it's done outside of the tables lock
+            List<Table> tablesToPrune;
+            synchronized(tables) {
+                tablesToPrune = new ArrayList<>(tables.values());
+            }
+            tablesToPrune.forEach(Table::pruneDisconnectedPlayers);
+
+            synchronized(tables) {
+                tables.values().removeIf(table -> {
+                    if(table.isEmpty() && !table.isRoundRunning()) {
+                        table.close();
+                        return true;
+                    }
+                    return false;
+                });
             }
         }
     };
@@ -0,0 +1,43 @@
+package com.sage.hearts.server;
+
+import com.sage.hearts.server.network.OverflowPolicy;
+
+public class ServerOptions {
+    // Maximum number of tables that can exist at once. Players trying to join a new table past this limit are denied.
+    public int maxTables = 256;
+
+    // When true, every connection is served by a few selector threads instead of a blocking reader thread per player
+    public boolean useSelectorTransport = true;
+
+    // Number of selector threads used when useSelectorTransport is true
+    public int ioThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+    // When true, the blocking socket readers and writers used when useSelectorTransport is false run as tasks on one
+    // shared cached pool of daemon threads instead of on a new thread each. Threads are reused as players come and go,
+    // but every connected player still holds one; only useSelectorTransport gets away with fewer.
+    public boolean useSharedExecutor = false;
+
+    // Number of threads shared by every table to handle its events. A table only needs a thread while it's handling a
+    // packet, so this doesn't have to grow with the number of tables.
+    public int tableThreads = Runtime.getRuntime().availableProcessors();
+
+    // Maximum number of bytes of frames that can be waiting to be written to a single player. Sends never wait on the
+    // network unless this fills up, so one slow client doesn't hold up the rest of its table.
+    public int maxQueuedBytes = 64 * 1024;
+
+    // What happens when a frame is sent to a player whose queue is full
+    public OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
+
+    // When set, every table deals its rounds from a seed worked out from this and its table id, so games can be
+    // replayed hand for hand. When null, deals are random.
+    public Long deckSeed = null;
+
+    // How long a player has to make their play, and to pick their warheads, before the server does it for them with
+    // their lowest valid card or their three highest cards. 0 waits on the player forever.
+    public long turnTimeoutMillis = 0;
+    public long warheadsTimeoutMillis = 0;
+
+    // How long a player who drops during a round keeps their seat. If they reconnect and RESUME in time, they're sent a
+    // snapshot of the round and carry on; otherwise the round is called off like it is straight away when this is 0.
+    public long resumeGraceMillis = 30_000;
+}
@@ -0,0 +1,406 @@
+package com.sage.hearts.server;
+
+import com.badlogic.gdx.utils.SerializationException;
+import com.sage.hearts.client.network.ClientCode;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.game.*;
+import com.sage.hearts.server.network.MultiplePlayersDisconnectedException;
+import com.sage.hearts.server.network.PlayerDisconnectedException;
+import com.sage.hearts.server.network.ServerCode;
+import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.simulation.HeuristicStrategy;
+import com.sage.hearts.utils.network.Protocol;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// A table has no thread of its own. Everything that moves its round along - a play or warheads arriving, a player
+// disconnecting or resuming, the host starting the round - is queued as an event on the table's SerialExecutor,
+// which handles them one at a time on threads shared with every other table. A table waiting on its players costs
+// nothing but memory.
+public class Table {
+    public final int tableId;
+
+    private final GameState gameState;
+    private final ServerOptions options;
+    private final ScheduledExecutorService scheduler;
+    private final SerialExecutor events;
+
+    private volatile boolean startRoundFlag = false; // This flag is set by the player communication thread
+    private RoundRunner round = null; // Only ever touched by events
+
+    private Player host = null;
+
+    private volatile boolean closed = false;
+
+    Table(int tableId, ServerOptions options, ScheduledExecutorService scheduler) {
+        this.tableId = tableId;
+        // Each table is seeded differently, but the same table id always gets the same seed
+        this.gameState = (options.deckSeed == null) ? new GameState() : new GameState(options.deckSeed + tableId);
+        this.options = options;
+        this.scheduler = scheduler;
+        this.events = new SerialExecutor(scheduler);
+    }
+
+    // Returns whether or not the player was seated. Players who could not be seated have already been sent
+    // CONNECTION_DENIED when this returns.
+    synchronized boolean seatPlayer(Player newPlayer) {
+        try {
+            // If round is started or the table is full, we can immediately end the connection
+            if(closed
+                    || gameState.isRoundRunning()
+                    || gameState.getPlayers().size() == GameState.NUM_PLAYERS_TO_START) {
+                sendConnectionDenied(newPlayer);
+                return false;
+            }
+
+            if(host == null || !gameState.getPlayers().contains(host)) {
+                host = newPlayer;
+                host.setHost(true);
+            }
+            newPlayer.setPlayerNum(gameState.getPlayers().size());
+            newPlayer.resetInitialPacketHandlers();
+            setInitialPacketHandlersForPlayer(newPlayer);
+            gameState.addPlayer(newPlayer);
+            ServerPacket acceptedPacket = new ServerPacket(ServerCode.CONNECTION_ACCEPTED);
+            acceptedPacket.data.put("protocol", Protocol.LATEST);
+            acceptedPacket.data.put("session", newPlayer.getSessionToken());
+            newPlayer.sendPacket(acceptedPacket);
+        } catch(RoundIsRunningException e) {
+            // If gameState.addPlayer throws a RoundIsRunningException, the new player will not be added
+            sendConnectionDenied(newPlayer);
+            return false;
+        } catch(SerializationException | PlayerDisconnectedException e) {
+            // If a PlayerDisconnectedException is encountered here, the next call to
+            // sendPlayersToAllUntilNoDisconnections will remove newPlayer from the player list
+        }
+        return true;
+    }
+
+    // Puts a player who dropped mid-round back in their seat, on the connection newPlayer was accepted with. Returns
+    // whether or not anyone at this table could resume with that session token.
+    synchronized boolean resumePlayer(Player newPlayer, String sessionToken) {
+        Player resumed = gameState.getPlayers().stream()
+                .filter(p -> (p.isAwaitingResume() || p.keepsSeat()) && p.getSessionToken().equals(sessionToken))
+                .findAny()
+                .orElse(null);
+        if(resumed == null) {
+            return false;
+        }
+        if(!resumed.isAwaitingResume()) {
+            // The client noticed the drop before the server did, so the old connection is given up on here. This
+            // queues the disconnect event ahead of the resume.
+            resumed.dropConnection();
+        }
+
+        try {
+            ServerPacket acceptedPacket = new ServerPacket(ServerCode.CONNECTION_ACCEPTED);
+            acceptedPacket.data.put("protocol", Protocol.LATEST);
+            acceptedPacket.data.put("session", resumed.getSessionToken());
+            newPlayer.sendPacket(acceptedPacket);
+        } catch(SerializationException | PlayerDisconnectedException e) {
+            // The seat is still kept, so the player can try again
+            return true;
+        }
+        newPlayer.resetInitialPacketHandlers();
+        resumed.resumeOn(newPlayer);
+        events.execute(() -> handleRoundEvent(r -> r.playerResumed(resumed)));
+        return true;
+    }
+
+    static void sendConnectionDenied(Player player) {
+        try {
+            player.sendPacket(new ServerPacket(ServerCode.CONNECTION_DENIED));
+        } catch(SerializationException | PlayerDisconnectedException e) {
+            // The player is being turned away anyway
+        }
+    }
+
+    // Bots don't count, since nobody is left to play with them
+    synchronized boolean isEmpty() {
+        return gameState.getPlayers().stream().allMatch(p -> p instanceof BotPlayer);
+    }
+
+    // addBot, removeBot and shufflePlayers run on the table's events, but still lock out seatPlayer, which numbers a new
+    // player by where they sit in the player list
+    private synchronized void addBot() {
+        PlayerList players = gameState.getPlayers();
+        if(closed || gameState.isRoundRunning() || players.size() == GameState.NUM_PLAYERS_TO_START) {
+            return;
+        }
+
+        BotPlayer bot = new BotPlayer(players.size(), gameState, new HeuristicStrategy(), events, scheduler);
+        bot.setName("Bot " + (players.stream().filter(p -> p instanceof BotPlayer).count() + 1));
+        setInitialPacketHandlersForPlayer(bot);
+        try {
+            gameState.addPlayer(bot);
+        } catch(RoundIsRunningException e) {
+            return;
+        }
+        sendPlayersToAllUntilNoDisconnections();
+    }
+
+    // Removes the most recently added bot
+    private synchronized void removeBot() {
+        PlayerList players = gameState.getPlayers();
+        for(int i = players.size() - 1; i >= 0; i--) {
+            if(players.get(i) instanceof BotPlayer) {
+                try {
+                    gameState.removePlayer(players.get(i));
+                } catch(RoundIsRunningException e) {
+                    return;
+                }
+                players.get(i).dropConnection();
+                gameState.getPlayers().squashPlayerNums();
+                sendPlayersToAllUntilNoDisconnections();
+                return;
+            }
+        }
+    }
+
+    boolean isRoundRunning() {
+        return gameState.isRoundRunning();
+    }
+
+    // The start of the round and every event after it run on the table's events
+    private void startRound() {
+        if(closed) {
+            startRoundFlag = false;
+            return;
+        }
+
+        round = new RoundRunner(gameState, options.turnTimeoutMillis, options.warheadsTimeoutMillis,
+                options.resumeGraceMillis, roundEvents);
+        try {
+            round.start();
+        } catch(RoundStartFailedException e) {
+            try {
+                host.sendPacket(new ServerPacket(ServerCode.COULD_NOT_START_GAME));
+            } catch(SerializationException | PlayerDisconnectedException e1) {
+                // The host will be pruned along with any other disconnected players
+            }
+        } catch(PlayerDisconnectedException | MultiplePlayersDisconnectedException e) {
+            roundInterrupted();
+        } finally {
+            finishRoundIfOver();
+        }
+    }
+
+    private void handleRoundEvent(Consumer<RoundRunner> event) {
+        if(round == null) {
+            return;
+        }
+        try {
+            event.accept(round);
+        } catch(PlayerDisconnectedException | MultiplePlayersDisconnectedException e) {
+            roundInterrupted();
+        } finally {
+            // Any other exception has ended the round too, and the table has to be ready for the next one
+            finishRoundIfOver();
+        }
+    }
+
+    private final RoundRunner.Events roundEvents = new RoundRunner.Events() {
+        @Override
+        public void playerDisconnected(Player player) {
+            events.execute(() -> handleRoundEvent(r -> r.playerDisconnected(player)));
+        }
+
+        @Override
+        public Future<?> scheduleDeadline(long delayMillis) {
+            return scheduler.schedule(() -> events.execute(() -> handleRoundEvent(RoundRunner::deadlinePassed)),
+                    delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public Future<?> scheduleResumeDeadline(Player player, long delayMillis) {
+            return scheduler.schedule(() -> events.execute(() -> handleRoundEvent(r -> r.resumeDeadlinePassed(player))),
+                    delayMillis, TimeUnit.MILLISECONDS);
+        }
+    };
+
+    private void roundInterrupted() {
+        gameState.removeDisconnectedPlayers();
+        try {
+            gameState.getPlayers().sendPacketToAll(new ServerPacket(ServerCode.PLAYER_DISCONNECTED));
+        } catch(MultiplePlayersDisconnectedException e) {
+            gameState.removeDisconnectedPlayers();
+        }
+    }
+
+    private void finishRoundIfOver() {
+        if(round.isOver()) {
+            round = null;
+            startRoundFlag = false;
+            sendPlayersToAllUntilNoDisconnections();
+        }
+    }
+
+    // This runs on the table's events, so the snapshot is never taken halfway through one
+    private void sendSnapshot(Player player) {
+        if(round != null) {
+            handleRoundEvent(r -> r.snapshotRequested(player));
+            return;
+        }
+        try {
+            gameState.getPlayers().sendPlayersTo(player);
+            player.sendPacket(new ServerPacket(ServerCode.NO_ROUND));
+        } catch(SerializationException | PlayerDisconnectedException e) {
+            // The player will be pruned along with any other disconnected players
+        }
+    }
+
+    void sendPlayersToAllUntilNoDisconnections() {
+        while(true) {
+            try {
+                gameState.getPlayers().sendPlayersToAll();
+            } catch(MultiplePlayersDisconnectedException e1) {
+                if(gameState.removeDisconnectedPlayers()) {
+                    continue;
+                }
+            }
+            break;
+        }
+    }
+
+    private void setInitialPacketHandlersForPlayer(Player player) {
+        // Handlers run on the thread that reads the player's connection, so anything that touches the game state is
+        // queued on the table's events instead
+        player.setInitialPacketHandlerForCode(ClientCode.NAME, packet -> {
+            events.execute(() -> changeName(player, packet));
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.START_GAME, packet -> {
+            if(player == host && !startRoundFlag) {
+                startRoundFlag = true; // This simply requests that the round start; it does not force it to start
+                events.execute(this::startRound);
+            } else {
+                player.sendPacket(new ServerPacket(ServerCode.COULD_NOT_START_GAME));
+            }
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.WARHEADS, packet -> {
+            events.execute(() -> handleRoundEvent(r -> r.warheadsReceived(player, packet)));
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.PLAY, packet -> {
+            events.execute(() -> handleRoundEvent(r -> r.playReceived(player, packet)));
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.PLAYER_POINTS_CHANGE, packet -> {
+            if(packet.data.get("player") instanceof Integer
+                    && packet.data.get("pointschange") instanceof Integer
+                    && player == host) {
+                events.execute(() -> changePlayerPoints((Integer)packet.data.get("player"),
+                        p -> p.incrementPointsOffset((Integer)packet.data.get("pointschange"))));
+            }
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.RESET_PLAYER_POINTS, packet -> {
+            if(packet.data.get("player") instanceof Integer && player == host) {
+                events.execute(() -> changePlayerPoints((Integer)packet.data.get("player"), p -> p.setPointsOffset(0)));
+            }
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.SHUFFLE_PLAYERS, packet -> {
+            if(player == host) {
+                events.execute(this::shufflePlayers);
+            }
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.ADD_BOT, packet -> {
+            if(player == host) {
+                events.execute(this::addBot);
+            }
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.REMOVE_BOT, packet -> {
+            if(player == host) {
+                events.execute(this::removeBot);
+            }
+            return false;
+        });
+
+        player.setInitialPacketHandlerForCode(ClientCode.REQUEST_SNAPSHOT, packet -> {
+            events.execute(() -> sendSnapshot(player));
+            return false;
+        });
+
+        // A player who is already seated can't switch tables
+        player.setInitialPacketHandlerForCode(ClientCode.JOIN_TABLE, packet -> false);
+
+        player.setInitialPacketHandlerForCode(ClientCode.PING, packet -> false);
+    }
+
+    private void changeName(Player player, ClientPacket packet) {
+        try {
+            if(packet.data.get("name") instanceof String && !gameState.isRoundRunning()) {
+                String sentName = (String)packet.data.get("name");
+                player.setName(sentName.substring(0, Math.min(sentName.length(), Server.MAX_PLAYER_NAME_LENGTH)));
+                sendPlayersToAllUntilNoDisconnections();
+            } else {
+                player.sendPacket(new ServerPacket(ServerCode.UNSUCCESSFUL_NAME_CHANGE));
+            }
+        } catch(SerializationException | PlayerDisconnectedException e) {
+            // The player will be pruned along with any other disconnected players
+        }
+    }
+
+    private void changePlayerPoints(int playerNum, Consumer<Player> change) {
+        gameState.getPlayers().getByPlayerNum(playerNum).ifPresent(p -> {
+            change.accept(p);
+            ServerPacket newPlayerPointsPacket = new ServerPacket(ServerCode.NEW_PLAYER_POINTS);
+            newPlayerPointsPacket.data.put("player", p.getPlayerNum());
+            newPlayerPointsPacket.data.put("points", p.getAccumulatedPoints());
+            sendPacketToAllAndHandleDisconnections(newPlayerPointsPacket);
+        });
+    }
+
+    private synchronized void shufflePlayers() {
+        try {
+            gameState.shufflePlayers();
+        } catch(RoundIsRunningException e) {
+            return;
+        }
+        gameState.getPlayers().squashPlayerNums();
+        sendPlayersToAllUntilNoDisconnections();
+    }
+
+    private void sendPacketToAllAndHandleDisconnections(ServerPacket packet) {
+        try {
+            gameState.getPlayers().sendPacketToAll(packet);
+        } catch(MultiplePlayersDisconnectedException e) {
+            gameState.removeDisconnectedPlayers();
+            sendPlayersToAllUntilNoDisconnections();
+        }
+    }
+
+    void pruneDisconnectedPlayers() {
+        // We don't need a timeout on this lock because it doesn't need to run while the round is running.
+        if(!gameState.isRoundRunning()) {
+            if(gameState.removeDisconnectedPlayers()) {
+                sendPlayersToAllUntilNoDisconnections();
+            }
+        }
+    }
+
+    synchronized void close() {
+        // Dropping every player connection queues a disconnect event that ends any round in progress
+        closed = true;
+        gameState.getPlayers().forEach(Player::forfeitSeat);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,334 @@
+package com.sage.hearts.server.game;
+
+import com.badlogic.gdx.Gdx;
+import com.sage.hearts.client.network.ClientCode;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.network.PlayerConnection;
+import com.sage.hearts.server.network.PlayerDisconnectedException;
+import com.sage.hearts.server.network.SharedFrame;
+import com.sage.hearts.simulation.SeatView;
+import com.sage.hearts.simulation.Strategy;
+import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.hearts.HeartsRules;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// A player that lives on the server. When it's sent MAKE_PLAY or SEND_WARHEADS it decides from the table's GameState
+// and hands its answer to its packet handlers, so rounds run exactly as if a client had replied, just without the
+// round trip. Every other packet sent to it is dropped without being encoded.
+public class BotPlayer extends Player {
+    // Strategies run off the table's events, and the table goes on handling other events while they do. A decision
+    // that isn't made within this budget is given up on, and the first valid cards are played instead. If that happens
+    // MAX_OVERRUNS decisions in a row, the bot plays the first valid cards for the rest of its life. A single overrun
+    // is forgiven since the first few decisions run before the JIT has warmed up.
+    public static final long DECISION_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    public static final int MAX_OVERRUNS = 3;
+
+    private static final Strategy FALLBACK_STRATEGY = new FirstValidStrategy();
+
+    // Strategies run here so that one that runs over can be cut off. A strategy that ignores being interrupted keeps
+    // its thread until it returns, but its answer is thrown away.
+    private static final ExecutorService DECISIONS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "Bot decisions");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final GameState gameState;
+    private final SeatView view = new TableSeatView();
+    private final Executor events;
+    private final ScheduledExecutorService scheduler;
+    private Strategy strategy;
+    // Everything below is only touched by the table's events
+    private int overruns = 0;
+    // Counts the decisions asked for, so that an answer that arrives after the bot has been asked again is dropped
+    private int decisionsRequested = 0;
+
+    // events must be the events of the table the bot sits at. scheduler times out decisions that run over.
+    public BotPlayer(int playerNum, GameState gameState, Strategy strategy, Executor events,
+                     ScheduledExecutorService scheduler) {
+        super(playerNum, new LocalConnection());
+        this.gameState = gameState;
+        this.strategy = strategy;
+        this.events = events;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void sendFrame(SharedFrame frame) throws PlayerDisconnectedException {
+        if(!socketIsConnected()) {
+            throw new PlayerDisconnectedException(this);
+        }
+        if(frame.packet.networkCode == null) {
+            return;
+        }
+
+        switch(frame.packet.networkCode) {
+        case SEND_WARHEADS:
+            sendWarheads(strategy);
+            break;
+        case MAKE_PLAY:
+            sendPlay(strategy);
+            break;
+        // Neither should happen since the bot checks its choices the same way the server does, but if the strategy
+        // gets it wrong anyway the fallback can't
+        case INVALID_WARHEADS:
+            sendWarheads(FALLBACK_STRATEGY);
+            break;
+        case INVALID_PLAY:
+            sendPlay(FALLBACK_STRATEGY);
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void sendWarheads(Strategy strategy) {
+        decide(strategy, strategy::chooseWarheads, () -> FALLBACK_STRATEGY.chooseWarheads(view), warheads -> {
+            ClientPacket warheadsPacket = new ClientPacket(ClientCode.WARHEADS);
+            warheadsPacket.data.put("warheads", warheads.toCardNumList());
+            receivePacket(warheadsPacket);
+        });
+    }
+
+    private void sendPlay(Strategy strategy) {
+        CardList<HeartsCard> validPlays = new CardSet(gameState.getValidPlays(this)).toCardList(HeartsCard::of);
+        if(validPlays.isEmpty()) {
+            return;
+        }
+
+        decide(strategy, seat -> strategy.choosePlay(seat, validPlays), () -> validPlays.get(0), play -> {
+            ClientPacket playPacket = new ClientPacket(ClientCode.PLAY);
+            playPacket.data.put("play", play.getCardNum());
+            receivePacket(playPacket);
+        });
+    }
+
+    // Called while the table is handling an event. The decision, or the fallback if the strategy fails or runs over
+    // its budget, is handed to answer in a later event.
+    private <T> void decide(Strategy decider, Function<SeatView, T> decision, Supplier<T> fallback,
+                            Consumer<T> answer) {
+        decisionsRequested++;
+        if(decider == FALLBACK_STRATEGY) {
+            answer.accept(decision.apply(view));
+            return;
+        }
+        new PendingDecision<>(decision, fallback, answer).start();
+    }
+
+    // A decision being made on DECISIONS. Whichever of the strategy and the timeout finishes first settles it.
+    private class PendingDecision<T> implements Runnable {
+        private final int decisionNum = decisionsRequested;
+        // The strategy runs while the table handles other events, so it's given a copy of what it can see
+        private final SeatView snapshot = new SeatSnapshot(view);
+        private final Function<SeatView, T> decision;
+        private final Supplier<T> fallback;
+        private final Consumer<T> answer;
+        private final AtomicBoolean settled = new AtomicBoolean(false);
+        private volatile Future<?> task;
+        private volatile Future<?> timeout;
+
+        PendingDecision(Function<SeatView, T> decision, Supplier<T> fallback, Consumer<T> answer) {
+            this.decision = decision;
+            this.fallback = fallback;
+            this.answer = answer;
+        }
+
+        void start() {
+            timeout = scheduler.schedule(this::overran, DECISION_BUDGET_NANOS, TimeUnit.NANOSECONDS);
+            task = DECISIONS.submit(this);
+        }
+
+        @Override
+        public void run() {
+            T decided;
+            try {
+                decided = decision.apply(snapshot);
+            } catch(RuntimeException e) {
+                if(settled.compareAndSet(false, true)) {
+                    timeout.cancel(false);
+                    Gdx.app.error(getLogTag(), "Strategy failed, playing first valid cards instead", e);
+                    events.execute(() -> settle(fallback));
+                }
+                return;
+            }
+            if(settled.compareAndSet(false, true)) {
+                timeout.cancel(false);
+                events.execute(() -> {
+                    overruns = 0;
+                    settle((decided == null) ? fallback : () -> decided);
+                });
+            }
+        }
+
+        private void overran() {
+            if(!settled.compareAndSet(false, true)) {
+                return;
+            }
+            Future<?> task = this.task;
+            if(task != null) {
+                task.cancel(true);
+            }
+            events.execute(() -> {
+                if(isCurrent() && ++overruns >= MAX_OVERRUNS && strategy != FALLBACK_STRATEGY) {
+                    Gdx.app.log(getLogTag(),
+                            "Strategy keeps going over its decision budget, falling back to first valid plays");
+                    strategy = FALLBACK_STRATEGY;
+                }
+                settle(fallback);
+            });
+        }
+
+        // Runs on the table's events. Nothing is answered if the bot has been asked again or has left the table.
+        private void settle(Supplier<T> choice) {
+            if(isCurrent()) {
+                answer.accept(choice.get());
+            }
+        }
+
+        private boolean isCurrent() {
+            return decisionNum == decisionsRequested && socketIsConnected();
+        }
+    }
+
+    private String getLogTag() {
+        return "Bot " + getPlayerNum() + ": \"" + getName() + "\"";
+    }
+
+    // Only ever read while the table is handling an event, which is when changes are made to gameState
+    private class TableSeatView implements SeatView {
+        @Override
+        public CardList<HeartsCard> getHand() {
+            return hand.toCardList(HeartsCard::of);
+        }
+
+        @Override
+        public CardList<HeartsCard> getPlaysInTrick() {
+            CardList<HeartsCard> plays = new CardList<>();
+            if(gameState.basePlay != null) {
+                int i = gameState.players.indexOf(gameState.startingPlayer);
+                for(Player p = gameState.startingPlayer;
+                    p != gameState.turnPlayer;
+                    p = gameState.players.get(++i % gameState.players.size())) {
+                    plays.add(p.play);
+                }
+            }
+            return plays;
+        }
+
+        @Override
+        public HeartsCard getBasePlay() {
+            return gameState.basePlay;
+        }
+
+        @Override
+        public HeartsCard getLeadingPlay() {
+            return (gameState.basePlay == null) ? null : gameState.leadingPlayer.play;
+        }
+
+        @Override
+        public boolean isFirstTrick() {
+            return gameState.tricksPlayed == 1;
+        }
+
+        @Override
+        public boolean isHeartsBroken() {
+            return gameState.heartsBroke;
+        }
+    }
+
+    private static class SeatSnapshot implements SeatView {
+        private final CardList<HeartsCard> hand;
+        private final CardList<HeartsCard> playsInTrick;
+        private final HeartsCard basePlay;
+        private final HeartsCard leadingPlay;
+        private final boolean firstTrick;
+        private final boolean heartsBroken;
+
+        SeatSnapshot(SeatView view) {
+            hand = view.getHand();
+            playsInTrick = view.getPlaysInTrick();
+            basePlay = view.getBasePlay();
+            leadingPlay = view.getLeadingPlay();
+            firstTrick = view.isFirstTrick();
+            heartsBroken = view.isHeartsBroken();
+        }
+
+        @Override
+        public CardList<HeartsCard> getHand() {
+            return new CardList<>(hand);
+        }
+
+        @Override
+        public CardList<HeartsCard> getPlaysInTrick() {
+            return playsInTrick;
+        }
+
+        @Override
+        public HeartsCard getBasePlay() {
+            return basePlay;
+        }
+
+        @Override
+        public HeartsCard getLeadingPlay() {
+            return leadingPlay;
+        }
+
+        @Override
+        public boolean isFirstTrick() {
+            return firstTrick;
+        }
+
+        @Override
+        public boolean isHeartsBroken() {
+            return heartsBroken;
+        }
+    }
+
+    private static class FirstValidStrategy implements Strategy {
+        @Override
+        public CardList<HeartsCard> chooseWarheads(SeatView view) {
+            return new CardList<>(view.getHand().subList(0, HeartsRules.NUM_WARHEADS));
+        }
+
+        @Override
+        public HeartsCard choosePlay(SeatView view, CardList<HeartsCard> validPlays) {
+            return validPlays.get(0);
+        }
+    }
+
+    // Nothing is ever read from or written to a bot's connection; it only tracks whether the bot is still seated
+    private static class LocalConnection implements PlayerConnection {
+        private volatile boolean connected = true;
+
+        @Override
+        public void start(FrameListener listener) {
+        }
+
+        @Override
+        public void write(byte[] frame) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void close() {
+            connected = false;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.sage.hearts.server.game;
 
-import com.sage.hearts.utils.card.CardList;
-import com.sage.hearts.utils.card.Suit;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.card.Deck;
 import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.hearts.HeartsRules;
+import com.sage.hearts.utils.hearts.PlayValidityResult;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -11,11 +13,12 @@ public class GameState {
     public static final int NUM_PLAYERS_TO_START = 4;
 
     final PlayerList players = new PlayerList();
+    final Deck deck;
 
     private boolean roundRunning = false;
 
     final HashMap<Integer, Integer> warheadMap = new HashMap<>();
-    final CardList<HeartsCard> pointCardsInTrick = new CardList<>();
+    final CardSet pointCardsInTrick = new CardSet();
     Player turnPlayer = null;
     Player leadingPlayer = null;
     Player startingPlayer = null;
@@ -24,6 +27,15 @@ public class GameState {
     int roundsPlayed = 0;
     boolean heartsBroke = false;
 
+    public GameState() {
+        this.deck = new Deck(false);
+    }
+
+    // Every game played with the same deckSeed is dealt the same hands, round for round
+    public GameState(long deckSeed) {
+        this.deck = new Deck(false, deckSeed);
+    }
+
     public synchronized void addPlayer(Player p) throws RoundIsRunningException {
         if(roundRunning) {
             throw new RoundIsRunningException();
@@ -106,40 +118,19 @@ public class GameState {
         }
     }
 
+    // Every card p could play right now, as CardSet bits. A card is in here exactly when isValidPlay accepts it.
+    long getValidPlays(Player p) {
+        int basePlayNum = (basePlay == null) ? HeartsRules.NO_PLAY : basePlay.getCardNum();
+        return HeartsRules.getValidPlays(p.hand.getBits(), basePlayNum, tricksPlayed == 1, heartsBroke);
+    }
+
     PlayValidityResult isValidPlay(Player p, HeartsCard play) {
-        if(play == null) {
-            return new PlayValidityResult(false, "Play was null (THIS IS BAD)");
-        } else if(p == null) {
-            return new PlayValidityResult(false, "Player was null (THIS IS BAD)");
-        } else if(!p.hand.contains(play.getRank(), play.getSuit())) {
-            return new PlayValidityResult(false, "Hand did not contain card (THIS IS BAD)");
-        } else if(tricksPlayed == 1 && play.getPoints() > 0 && p.hand.stream().anyMatch(c -> c.getPoints() == 0)) {
-            return new PlayValidityResult(false, "You cannot play points on the first round");
-        } else if(basePlay == null) {
-            if(play.getSuit() != Suit.HEARTS
-                    || p.hand.stream().allMatch(c -> c.getSuit() == Suit.HEARTS)
-                    || heartsBroke) {
-                return new PlayValidityResult(true, "");
-            } else {
-                return new PlayValidityResult(false, "Hearts has not been broken yet");
-            }
-        } else if(play.getSuit() != basePlay.getSuit()) {
-            if(!p.hand.containsAnySuit(basePlay.getSuit())) {
-                heartsBroke = play.getSuit() == Suit.HEARTS;
-                return new PlayValidityResult(true, "");
-            } else {
-                return new PlayValidityResult(false,
-                        "You still have " + basePlay.getSuit().toString() + " in your hand");
-            }
-        } else {
-            return new PlayValidityResult(true, "");
-        }
+        return HeartsRules.checkPlay((p == null) ? null : p.hand, play, basePlay, tricksPlayed == 1, heartsBroke);
     }
 
-    boolean areValidWarheads(Player p, CardList<HeartsCard> warheads) {
-        p.hand.forEach(c -> System.out.print(c.toString() + " "));
-        warheads.forEach(c -> System.out.print(c.toString() + " "));
-        return p.hand.toCardNumList().containsAll(warheads.toCardNumList());
+    // warheads is a set, so sending the same card more than once leaves it short of HeartsRules.NUM_WARHEADS cards
+    boolean areValidWarheads(Player p, CardSet warheads) {
+        return warheads.size() == HeartsRules.NUM_WARHEADS && p.hand.containsAll(warheads);
     }
 
     public synchronized boolean isRoundRunning() {
@@ -1,79 +1,163 @@
 package com.sage.hearts.server.game;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.net.Socket;
 import com.badlogic.gdx.utils.SerializationException;
 import com.sage.hearts.client.network.ClientCode;
 import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.network.PlayerConnection;
 import com.sage.hearts.server.network.PlayerDisconnectedException;
+import com.sage.hearts.server.network.ServerCode;
 import com.sage.hearts.server.network.ServerPacket;
-import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.server.network.SharedFrame;
+import com.sage.hearts.utils.card.CardSet;
 import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.network.PacketCodec;
+import com.sage.hearts.utils.network.Protocol;
 
-import java.io.*;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 public class Player {
+    private static final SecureRandom SESSION_RANDOM = new SecureRandom();
+    private static final int SESSION_TOKEN_BYTES = 18;
+
     private int playerNum;
     private String name;
     private boolean isHost = false;
 
-    public final CardList<HeartsCard> hand = new CardList<>();
-    public final CardList<HeartsCard> collectedPointCards = new CardList<>();
+    public final CardSet hand = new CardSet();
+    public final CardSet collectedPointCards = new CardSet();
     public HeartsCard play;
     public int accumulatedPoints = 0;
     public int pointsOffset = 0; // Offset provided by host for manual point changing
 
-    private final Socket socket;
-    private final DataOutputStream output;
-    private final DataInputStream input;
-    private final BlockingQueue<ClientPacket> packetQueue = new LinkedBlockingQueue<>();
-    private volatile boolean isWaitingForPacket = false;
+    private volatile PlayerConnection connection;
+    // Handed to the player's client so it can get back into its seat with RESUME after losing its connection. It's
+    // only made once the player is seated, so that accepting connections never waits on SESSION_RANDOM.
+    private String sessionToken = null;
+    // Once a player resumes on a new connection, packets from the Player that connection was accepted with belong to
+    // the resumed player
+    private volatile Player resumedAs = null;
+    // keepsSeat is set while the player is in a round that holds their seat for a while if they drop. Until they
+    // resume, awaitingResume is set and nothing is sent to them.
+    private volatile boolean keepsSeat = false;
+    private volatile boolean awaitingResume = false;
+    private volatile int protocolVersion = Protocol.LEGACY;
+    private volatile PacketCodec<ServerPacket> outboundCodec = ServerPacket.LEGACY_CODEC;
 
-    private final Thread packetQueueFillerThread;
     private final Map<ClientCode, PacketHandler> initialPacketHandlers = new ConcurrentHashMap<>();
     private OnDisconnectAction onDisconnectAction;
 
-    public Player(int playerNum, Socket socket) {
-        this.socket = socket;
+    public Player(int playerNum, PlayerConnection connection) {
+        this.connection = connection;
         this.playerNum = playerNum;
         this.name = "Player " + playerNum;
+    }
 
-        output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
-        input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
-
-        packetQueueFillerThread = new Thread(() -> {
-            while(socketIsConnected()) {
+    // This should only be called once the initial packet handlers have been set, otherwise the first packets the
+    // player sends may be dropped
+    public void startReceivingPackets() {
+        final PlayerConnection listenedTo = connection;
+        listenedTo.start(new PlayerConnection.FrameListener() {
+            @Override
+            public void frameReceived(byte[] frame) {
                 try {
-                    int packetSize = input.readInt();
-                    ClientPacket packet = ClientPacket.fromBytes(input.readNBytes(packetSize));
-                    if(initialPacketHandler(packet)) {
-                        try {
-                            packetQueue.add(packet);
-                        } catch(Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-                } catch(IOException e) {
-                    Gdx.app.log("packQueueFillerThread for player " + playerNum + ": \"" + name + "\"",
-                            "Encountered IOException, dropping connection");
-                    dropConnection();
-                    return;
-                } catch(SerializationException | IllegalArgumentException | OutOfMemoryError e) {
+                    owner().receivePacket(ClientPacket.decode(frame));
+                } catch(SerializationException | IllegalArgumentException e) {
                     e.printStackTrace();
                 }
             }
+
+            @Override
+            public void connectionLost() {
+                Player owner = owner();
+                Gdx.app.log("Connection for player " + owner.getPlayerNum() + ": \"" + owner.getName() + "\"",
+                        "Connection lost, dropping connection");
+                owner.dropConnection(listenedTo);
+            }
         });
-        packetQueueFillerThread.setDaemon(true);
-        packetQueueFillerThread.start();
     }
 
-    private synchronized boolean initialPacketHandler(final ClientPacket packet) {
+    private Player owner() {
+        Player owner = resumedAs;
+        return (owner == null) ? this : owner;
+    }
+
+    public synchronized String getSessionToken() {
+        if(sessionToken == null) {
+            byte[] tokenBytes = new byte[SESSION_TOKEN_BYTES];
+            SESSION_RANDOM.nextBytes(tokenBytes);
+            sessionToken = Base64.getUrlEncoder().encodeToString(tokenBytes);
+        }
+        return sessionToken;
+    }
+
+    // Puts this player back on the connection newPlayer was accepted with. Anything newPlayer receives from now on is
+    // handled as this player's. Nothing is sent to this player until setAwaitingResume(false) is called.
+    public synchronized void resumeOn(Player newPlayer) {
+        connection = newPlayer.connection;
+        protocolVersion = newPlayer.protocolVersion;
+        outboundCodec = newPlayer.outboundCodec;
+        newPlayer.resumedAs = this;
+    }
+
+    public boolean keepsSeat() {
+        return keepsSeat;
+    }
+
+    void setKeepsSeat(boolean keepsSeat) {
+        this.keepsSeat = keepsSeat;
+    }
+
+    public boolean isAwaitingResume() {
+        return awaitingResume;
+    }
+
+    void setAwaitingResume(boolean awaitingResume) {
+        this.awaitingResume = awaitingResume;
+    }
+
+    // Bots call this to answer the server as if their packets had come from a connection
+    void receivePacket(ClientPacket packet) {
+        if(packet.networkCode == ClientCode.PROTOCOL) {
+            // The protocol belongs to the connection rather than to whatever table the player is at
+            selectProtocol(packet);
+        } else if(initialPacketHandler(packet)) {
+            Gdx.app.log("Connection for player " + getPlayerNum() + ": \"" + getName() + "\"",
+                    "Nothing handles " + packet.networkCode + " here, dropping packet");
+        }
+    }
+
+    private void selectProtocol(ClientPacket packet) {
+        int requested = (packet.data.get("version") instanceof Integer)
+                ? (Integer)packet.data.get("version")
+                : Protocol.LEGACY;
+        int selected = Protocol.select(requested);
+
+        ServerPacket selectedPacket = new ServerPacket(ServerCode.PROTOCOL_SELECTED);
+        selectedPacket.data.put("version", selected);
+        try {
+            // PROTOCOL_SELECTED still goes out with the old codec; the client only switches once it has read it. It's
+            // written even while the player is awaiting resume, since it belongs to the new connection.
+            writeFrame(new SharedFrame(selectedPacket));
+        } catch(PlayerDisconnectedException e) {
+            return;
+        }
+        protocolVersion = selected;
+        outboundCodec = (selected >= Protocol.BINARY) ? ServerPacket.BINARY_CODEC : ServerPacket.LEGACY_CODEC;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    // This must not be synchronized on the player: handlers routinely send packets to every player at the table, which
+    // locks the other players. Packets from a single player are only ever handled by that player's reader, one by one.
+    private boolean initialPacketHandler(final ClientPacket packet) {
         if(packet.networkCode != null) {
             PacketHandler handler = initialPacketHandlers.get(packet.networkCode);
             if(handler != null) {
@@ -83,11 +167,15 @@ public class Player {
         return true;
     }
 
-    // PacketHandler code will be run by packetQueueFillerThread
+    // PacketHandler code will be run by the thread that reads from the player's connection
     public synchronized void setInitialPacketHandlerForCode(ClientCode code, PacketHandler handler) {
         initialPacketHandlers.put(code, handler);
     }
 
+    public Optional<PacketHandler> getInitialPacketHandlerForCode(ClientCode code) {
+        return Optional.ofNullable(initialPacketHandlers.get(code));
+    }
+
     public synchronized void resetInitialPacketHandlers() {
         initialPacketHandlers.clear();
     }
@@ -106,80 +194,34 @@ public class Player {
     }
 
     public void sendPacket(final ServerPacket packet) throws SerializationException, PlayerDisconnectedException {
-        synchronized(output) {
-            if(!socketIsConnected()) {
-                throw new PlayerDisconnectedException(this);
-            }
-            try {
-                byte[] packetBytes = packet.toBytes();
-                output.writeInt(packetBytes.length);
-                output.write(packetBytes);
-                output.flush();
-            } catch(IOException e) {
-                dropConnection();
-                throw new PlayerDisconnectedException(this);
-            }
-        }
+        sendFrame(new SharedFrame(packet));
     }
 
-    public Optional<ClientPacket> getPacket() throws InterruptedException, PlayerDisconnectedException {
-        synchronized(packetQueue) {
-            ClientPacket ret = packetQueue.poll();
-            if(ret instanceof PlayerDisconnectedItem) {
-                throw new PlayerDisconnectedException(this);
-            } else if(ret instanceof InterruptItem) {
-                throw new InterruptedException();
-            } else {
-                return Optional.ofNullable(ret);
-            }
+    // Sends a packet that may also be sent to other players, encoding it only if no other player using the same codec
+    // has already encoded it
+    public void sendFrame(final SharedFrame frame) throws SerializationException, PlayerDisconnectedException {
+        // A player who resumes is sent a snapshot of everything they missed
+        if(!awaitingResume) {
+            writeFrame(frame);
         }
     }
 
-    public ClientPacket waitForPacket() throws InterruptedException, PlayerDisconnectedException {
-        synchronized(packetQueue) {
-            try {
-                isWaitingForPacket = true;
-                ClientPacket ret = packetQueue.take();
-                if(ret instanceof PlayerDisconnectedItem) {
-                    throw new PlayerDisconnectedException(this);
-                } else if(ret instanceof InterruptItem) {
-                    throw new InterruptedException();
-                } else {
-                    return ret;
-                }
-            } finally {
-                isWaitingForPacket = false;
-            }
+    private void writeFrame(final SharedFrame frame) throws SerializationException, PlayerDisconnectedException {
+        if(!socketIsConnected()) {
+            throw new PlayerDisconnectedException(this);
         }
-    }
-
-    public Optional<ClientPacket> waitForPacket(long timeout, TimeUnit unit)
-            throws InterruptedException, PlayerDisconnectedException {
-        synchronized(packetQueue) {
-            try {
-                isWaitingForPacket = true;
-                if(timeout <= 0) {
-                    return Optional.of(waitForPacket());
-                } else {
-                    ClientPacket ret = packetQueue.poll(timeout, unit);
-                    if(ret instanceof PlayerDisconnectedItem) {
-                        throw new PlayerDisconnectedException(this);
-                    } else if(ret instanceof InterruptItem) {
-                        throw new InterruptedException();
-                    } else {
-                        return Optional.ofNullable(ret);
-                    }
-                }
-            } finally {
-                isWaitingForPacket = false;
+        try {
+            connection.write(frame.encodedWith(outboundCodec));
+        } catch(IOException e) {
+            Gdx.app.log("Connection for player " + getPlayerNum() + ": \"" + getName() + "\"",
+                    "Could not send packet (" + e.getMessage() + "), dropping connection");
+            dropConnection();
+            if(!awaitingResume) {
+                throw new PlayerDisconnectedException(this);
             }
         }
     }
 
-    public boolean isWaitingForPacket() {
-        return isWaitingForPacket;
-    }
-
     public synchronized int getPlayerNum() {
         return playerNum;
     }
@@ -205,7 +247,7 @@ public class Player {
     }
 
     public synchronized boolean socketIsConnected() {
-        return socket.isConnected();
+        return connection.isConnected();
     }
 
     public synchronized int getAccumulatedPoints() {
@@ -232,36 +274,31 @@ public class Player {
         pointsOffset += inc;
     }
 
-    public synchronized void interruptPacketWaiting() {
-        packetQueue.add(new InterruptItem());
-    }
-
     public synchronized void dropConnection() {
+        if(keepsSeat) {
+            awaitingResume = true;
+        }
         if(onDisconnectAction != null) {
             onDisconnectAction.action();
         }
-        packetQueue.add(new PlayerDisconnectedItem());
-        socket.dispose();
-    }
-
-    public synchronized void clearPacketQueue() {
-        packetQueue.clear();
+        connection.close();
     }
 
-    private abstract class PoisonQueueItem extends ClientPacket {
-
+    // Drops the player without keeping their seat, even if they're in a round that would
+    public synchronized void forfeitSeat() {
+        keepsSeat = false;
+        dropConnection();
     }
 
-    private class PlayerDisconnectedItem extends PoisonQueueItem {
-
-    }
-
-    private class InterruptItem extends PoisonQueueItem {
-
+    // A connection the player has already resumed away from can't drop them
+    private synchronized void dropConnection(PlayerConnection lostConnection) {
+        if(lostConnection == connection) {
+            dropConnection();
+        }
     }
 
     public interface PacketHandler {
-        // Returns whether or not the packet should be propagated to the packetQueue
+        // Returns whether or not the packet was left unhandled, in which case it is dropped
         boolean handle(final ClientPacket packet);
     }
 
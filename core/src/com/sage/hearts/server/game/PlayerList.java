@@ -5,6 +5,7 @@ import com.sage.hearts.server.network.MultiplePlayersDisconnectedException;
 import com.sage.hearts.server.network.PlayerDisconnectedException;
 import com.sage.hearts.server.network.ServerCode;
 import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.server.network.SharedFrame;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,10 +21,19 @@ public class PlayerList extends ArrayList<Player> {
     }
 
     public void sendPacketToAll(ServerPacket packet) throws MultiplePlayersDisconnectedException {
+        sendPacketToAllExcluding(packet);
+    }
+
+    // The packet is encoded once per codec in use rather than once per player
+    public void sendPacketToAllExcluding(ServerPacket packet, Player...excluded) throws MultiplePlayersDisconnectedException {
+        SharedFrame frame = new SharedFrame(packet);
         PlayerList disconnectedPlayers = null;
         for(Player p : this) {
+            if(isExcluded(p, excluded)) {
+                continue;
+            }
             try {
-                p.sendPacket(packet);
+                p.sendFrame(frame);
             } catch(PlayerDisconnectedException e) {
                 if(disconnectedPlayers == null) {
                     disconnectedPlayers = new PlayerList();
@@ -38,10 +48,13 @@ public class PlayerList extends ArrayList<Player> {
         }
     }
 
-    public void sendPacketToAllExcluding(ServerPacket packet, Player...excluded) throws MultiplePlayersDisconnectedException {
-        PlayerList newPlayerList = new PlayerList(this);
-        newPlayerList.removeAll(List.of(excluded));
-        newPlayerList.sendPacketToAll(packet);
+    private static boolean isExcluded(Player p, Player[] excluded) {
+        for(Player e : excluded) {
+            if(e == p) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void sendPlayersToAll() throws MultiplePlayersDisconnectedException {
@@ -49,22 +62,15 @@ public class PlayerList extends ArrayList<Player> {
             return;
         }
 
-        HashMap<Integer, String> players =
-                stream().collect(Collectors.toMap(Player::getPlayerNum, Player::getName, (a, b) -> b, HashMap::new));
-        HashMap<Integer, Integer> accumulatedPoints =
-                stream().collect(Collectors.toMap(Player::getPlayerNum, Player::getAccumulatedPoints, (a, b) -> b, HashMap::new));
-        Integer hostNum = stream().filter(Player::isHost).findAny().orElse(this.get(0)).getPlayerNum();
+        HashMap<Integer, String> players = getNames();
+        HashMap<Integer, Integer> accumulatedPoints = getAccumulatedPoints();
+        Integer hostNum = getHostNum();
 
         // Pretty much copy/pasted code from sendPacketToAll()
         PlayerList disconnectedPlayers = null;
         for(Player p : this) {
-            ServerPacket playersPacket = new ServerPacket(ServerCode.WAIT_FOR_PLAYERS);
-            playersPacket.data.put("players", players);
-            playersPacket.data.put("points", accumulatedPoints);
-            playersPacket.data.put("host", hostNum);
-            playersPacket.data.put("you", p.getPlayerNum());
             try {
-                p.sendPacket(playersPacket);
+                p.sendPacket(getPlayersPacket(players, accumulatedPoints, hostNum, p));
             } catch(PlayerDisconnectedException e) {
                 if(disconnectedPlayers == null) {
                     disconnectedPlayers = new PlayerList();
@@ -79,6 +85,36 @@ public class PlayerList extends ArrayList<Player> {
         }
     }
 
+    // Sends WAIT_FOR_PLAYERS to a single player in this list
+    public void sendPlayersTo(Player recipient) throws PlayerDisconnectedException {
+        recipient.sendPacket(getPlayersPacket(getNames(), getAccumulatedPoints(), getHostNum(), recipient));
+    }
+
+    private HashMap<Integer, String> getNames() {
+        return stream().collect(Collectors.toMap(Player::getPlayerNum, Player::getName, (a, b) -> b, HashMap::new));
+    }
+
+    private HashMap<Integer, Integer> getAccumulatedPoints() {
+        return stream().collect(
+                Collectors.toMap(Player::getPlayerNum, Player::getAccumulatedPoints, (a, b) -> b, HashMap::new));
+    }
+
+    private Integer getHostNum() {
+        return stream().filter(Player::isHost).findAny().orElse(this.get(0)).getPlayerNum();
+    }
+
+    private static ServerPacket getPlayersPacket(HashMap<Integer, String> players,
+                                                 HashMap<Integer, Integer> accumulatedPoints,
+                                                 Integer hostNum,
+                                                 Player recipient) {
+        ServerPacket playersPacket = new ServerPacket(ServerCode.WAIT_FOR_PLAYERS);
+        playersPacket.data.put("players", players);
+        playersPacket.data.put("points", accumulatedPoints);
+        playersPacket.data.put("host", hostNum);
+        playersPacket.data.put("you", recipient.getPlayerNum());
+        return playersPacket;
+    }
+
     public Optional<Player> getByPlayerNum(int playerNum) {
         for(Player p : this) {
             if(p.getPlayerNum() == playerNum) {
@@ -1,30 +1,74 @@
 package com.sage.hearts.server.game;
 
-import com.sage.hearts.client.network.ClientCode;
 import com.sage.hearts.client.network.ClientPacket;
-import com.sage.hearts.server.network.MultiplePlayersDisconnectedException;
 import com.sage.hearts.server.network.PlayerDisconnectedException;
 import com.sage.hearts.server.network.ServerCode;
 import com.sage.hearts.server.network.ServerPacket;
-import com.sage.hearts.utils.card.CardList;
-import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.server.network.SharedFrame;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.hearts.HeartsRules;
+import com.sage.hearts.utils.network.Protocol;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+// Plays one round at a table. start() deals and asks for warheads, and from then on the round only moves forward when
+// the table hands it an event: warheads or a play arriving, a deadline passing, or a player disconnecting or resuming.
+// Nothing here waits on a player, so a round holds no thread between events; the table makes sure its events are
+// handled one at a time.
+//
+// Any of these can throw a PlayerDisconnectedException or MultiplePlayersDisconnectedException, after which the round
+// is over and can't be continued.
 public class RoundRunner {
-    public static void playRound(GameState gameState) throws RoundStartFailedException {
-        try {
-            gameState.setRoundRunning(true);
+    private enum Stage {
+        NOT_STARTED,
+        PASSING_WARHEADS,
+        PLAYING_TRICKS,
+        OVER
+    }
 
-            if(gameState.players.size() != GameState.NUM_PLAYERS_TO_START
-                    || gameState.players.stream().anyMatch(p -> Objects.isNull(p) || !p.socketIsConnected())) {
-                gameState.setRoundRunning(false);
-                throw new RoundStartFailedException();
-            }
+    private final GameState gameState;
+    private final long turnTimeoutMillis;
+    private final long warheadsTimeoutMillis;
+    private final long resumeGraceMillis;
+    private final Events events;
+    private Stage stage = Stage.NOT_STARTED;
+
+    private WarheadCollector warheadCollector;
+    private TrickRunner trickRunner;
+
+    // Only one deadline runs at a time: the one for everyone's warheads, then the one for the current turn
+    private Future<?> deadline = null;
+    private long deadlineNanos;
+
+    // Players who have dropped but still have their seat
+    private final Map<Player, Absence> awayPlayers = new HashMap<>();
+
+    // A timeout of 0 waits on players forever, and a resumeGraceMillis of 0 ends the round as soon as anyone drops
+    public RoundRunner(GameState gameState, long turnTimeoutMillis, long warheadsTimeoutMillis, long resumeGraceMillis,
+                       Events events) {
+        this.gameState = gameState;
+        this.turnTimeoutMillis = turnTimeoutMillis;
+        this.warheadsTimeoutMillis = warheadsTimeoutMillis;
+        this.resumeGraceMillis = resumeGraceMillis;
+        this.events = events;
+    }
 
+    public void start() throws RoundStartFailedException {
+        gameState.setRoundRunning(true);
+
+        if(gameState.players.size() != GameState.NUM_PLAYERS_TO_START
+                || gameState.players.stream().anyMatch(p -> Objects.isNull(p) || !p.socketIsConnected())) {
+            end();
+            throw new RoundStartFailedException();
+        }
+
+        handleEvent(() -> {
+            gameState.players.forEach(p -> {
+                p.setKeepsSeat(resumeGraceMillis > 0);
+                p.setOnDisconnect(() -> events.playerDisconnected(p));
+            });
             gameState.resetForNewRound();
 
             gameState.players.sendPlayersToAll();
@@ -33,26 +77,259 @@ public class RoundRunner {
             roundStartPacket.data.put("playerorder", gameState.players.stream().mapToInt(Player::getPlayerNum).toArray());
             gameState.players.sendPacketToAll(roundStartPacket);
 
-            Deck deck = new Deck(false);
-            deck.shuffle();
-            deck.dealToPlayers(gameState.players);
-
+            gameState.deck.shuffle();
+            gameState.deck.deal(gameState.players.stream().map(p -> p.hand).toArray(CardSet[]::new));
             sendHands(gameState);
-            tradeWarheads(gameState);
 
-            gameState.players.forEach(p -> p.setOnDisconnect(() -> {
-                gameState.players.forEach(Player::interruptPacketWaiting);
-            }));
+            stage = Stage.PASSING_WARHEADS;
+            warheadCollector = new WarheadCollector(gameState);
+            startDeadline(warheadsTimeoutMillis);
+            for(Player p : gameState.players) {
+                p.sendPacket(sendWarheadsPacket(p, warheadsTimeoutMillis));
+            }
+        });
+    }
+
+    public void warheadsReceived(Player player, ClientPacket packet) {
+        handleEvent(() -> {
+            if(stage == Stage.PASSING_WARHEADS && warheadCollector.warheadsReceived(player, packet)) {
+                warheadsCollected();
+            }
+        });
+    }
 
-            do {
-                TrickRunner.playTrick(gameState);
-            } while(gameState.players.stream().anyMatch(p -> p.hand.stream().anyMatch(c -> c.getPoints() > 0)));
-            // There's no point in continuing play if all point cards have been played and distributed
+    public void playReceived(Player player, ClientPacket packet) {
+        handleEvent(() -> {
+            if(stage == Stage.PLAYING_TRICKS && trickRunner.playReceived(player, packet)) {
+                playMade();
+            }
+        });
+    }
 
-            gameState.players.forEach(Player::resetOnDisconnect);
+    public void deadlinePassed() {
+        handleEvent(() -> {
+            // A deadline may have been replaced after it had already fired
+            if(deadline == null || System.nanoTime() - deadlineNanos < 0) {
+                return;
+            }
+            deadline = null;
+
+            if(stage == Stage.PASSING_WARHEADS) {
+                warheadCollector.pickRemainingWarheads();
+                warheadsCollected();
+            } else if(stage == Stage.PLAYING_TRICKS) {
+                trickRunner.autoPlay();
+                playMade();
+            }
+        });
+    }
+
+    public void playerDisconnected(Player player) {
+        handleEvent(() -> {
+            if(stage == Stage.OVER || awayPlayers.containsKey(player)) {
+                return;
+            }
+            // Players only await resume while the round is keeping their seat
+            if(!player.isAwaitingResume()) {
+                throw new PlayerDisconnectedException(player);
+            }
+
+            awayPlayers.put(player, new Absence(events.scheduleResumeDeadline(player, resumeGraceMillis),
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resumeGraceMillis)));
+            ServerPacket playerAwayPacket = new ServerPacket(ServerCode.PLAYER_AWAY);
+            playerAwayPacket.data.put("player", player.getPlayerNum());
+            playerAwayPacket.data.put("timeleft", (int)resumeGraceMillis);
+            sendToOthersWhoKnowResume(playerAwayPacket, player);
+        });
+    }
+
+    // Called once the player has been put back on a new connection with Player.resumeOn()
+    public void playerResumed(Player player) {
+        handleEvent(() -> {
+            Absence absence = awayPlayers.remove(player);
+            if(absence == null) {
+                return;
+            }
+            absence.resumeDeadline.cancel(false);
+            player.setAwaitingResume(false);
+
+            sendSnapshot(player);
+            ServerPacket playerBackPacket = new ServerPacket(ServerCode.PLAYER_BACK);
+            playerBackPacket.data.put("player", player.getPlayerNum());
+            sendToOthersWhoKnowResume(playerBackPacket, player);
+        });
+    }
+
+    public void snapshotRequested(Player player) {
+        handleEvent(() -> {
+            // Players who are away get their snapshot when they resume
+            if(stage != Stage.OVER && !awayPlayers.containsKey(player)) {
+                sendSnapshot(player);
+            }
+        });
+    }
+
+    public void resumeDeadlinePassed(Player player) {
+        handleEvent(() -> {
+            Absence absence = awayPlayers.get(player);
+            // The deadline may belong to an earlier absence that the player has already come back from
+            if(absence != null && System.nanoTime() - absence.resumeDeadlineNanos >= 0) {
+                throw new PlayerDisconnectedException(player);
+            }
+        });
+    }
+
+    public boolean isOver() {
+        return stage == Stage.OVER;
+    }
+
+    private void warheadsCollected() {
+        tradeWarheads(gameState, warheadCollector.getAllWarheads());
+        warheadCollector = null;
+        stage = Stage.PLAYING_TRICKS;
+        startTrick();
+    }
+
+    private void startTrick() {
+        trickRunner = new TrickRunner(gameState, turnTimeoutMillis);
+        trickRunner.start();
+        startDeadline(turnTimeoutMillis);
+    }
+
+    private void playMade() {
+        if(!trickRunner.isOver()) {
+            startDeadline(turnTimeoutMillis);
+        } else if(gameState.players.stream().anyMatch(p -> HeartsRules.containsPoints(p.hand))) {
+            startTrick();
+        } else {
+            // There's no point in continuing play if all point cards have been played and distributed
             gameState.players.sendPacketToAll(updatePointsAndGetRoundEndPacket(gameState));
-        } finally {
-            gameState.setRoundRunning(false);
+            end();
+        }
+    }
+
+    private void startDeadline(long timeoutMillis) {
+        cancelDeadline();
+        if(timeoutMillis > 0) {
+            deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            deadline = events.scheduleDeadline(timeoutMillis);
+        }
+    }
+
+    private void cancelDeadline() {
+        if(deadline != null) {
+            deadline.cancel(false);
+            deadline = null;
+        }
+    }
+
+    // 0 if there's no deadline running
+    private long getDeadlineMillisLeft() {
+        if(deadline == null) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    // Catches a player up on the whole round, then asks them again for whatever the round is waiting on from them
+    private void sendSnapshot(Player player) {
+        gameState.players.sendPlayersTo(player);
+
+        CardSet acceptedWarheads = (stage == Stage.PASSING_WARHEADS)
+                ? warheadCollector.getAllWarheads().get(player)
+                : null;
+        CardSet hand = new CardSet(player.hand);
+        if(acceptedWarheads != null) {
+            hand.removeAll(acceptedWarheads); // They stay in the hand until everyone's warheads are traded
+        }
+
+        HashMap<Integer, Integer> plays = new HashMap<>();
+        if(stage == Stage.PLAYING_TRICKS && gameState.basePlay != null) {
+            Player p = gameState.startingPlayer;
+            while(p != gameState.turnPlayer) {
+                plays.put(p.getPlayerNum(), p.play.getCardNum());
+                p = TrickRunner.getNextPlayer(gameState, p);
+            }
+        }
+        HashMap<Integer, Integer> taken = new HashMap<>();
+        for(Player p : gameState.players) {
+            for(int cardNum : p.collectedPointCards.toCardNumList()) {
+                taken.put(cardNum, p.getPlayerNum());
+            }
+        }
+
+        ServerPacket snapshotPacket = new ServerPacket(ServerCode.GAME_SNAPSHOT);
+        snapshotPacket.data.put("playerorder", gameState.players.stream().mapToInt(Player::getPlayerNum).toArray());
+        snapshotPacket.data.put("warheadmap", gameState.warheadMap);
+        snapshotPacket.data.put("hand", hand.toCardNumList());
+        snapshotPacket.data.put("plays", plays);
+        snapshotPacket.data.put("taken", taken);
+        snapshotPacket.data.put("heartsbroke", gameState.heartsBroke);
+        if(stage == Stage.PLAYING_TRICKS) {
+            snapshotPacket.data.put("turn", gameState.turnPlayer.getPlayerNum());
+            if(gameState.basePlay != null) {
+                snapshotPacket.data.put("leader", gameState.leadingPlayer.getPlayerNum());
+            }
+        }
+        player.sendPacket(snapshotPacket);
+
+        if(stage == Stage.PASSING_WARHEADS && acceptedWarheads == null) {
+            player.sendPacket(sendWarheadsPacket(player, getDeadlineMillisLeft()));
+        } else if(stage == Stage.PLAYING_TRICKS && gameState.turnPlayer == player) {
+            player.sendPacket(trickRunner.makePlayPacket(getDeadlineMillisLeft()));
+        }
+    }
+
+    // Only clients that know about resuming understand PLAYER_AWAY and PLAYER_BACK
+    private void sendToOthersWhoKnowResume(ServerPacket packet, Player excluded) {
+        SharedFrame frame = new SharedFrame(packet);
+        for(Player p : gameState.players) {
+            if(p != excluded && p.getProtocolVersion() >= Protocol.RESUME) {
+                p.sendFrame(frame);
+            }
+        }
+    }
+
+    private void handleEvent(Runnable event) {
+        try {
+            event.run();
+        } catch(RuntimeException | Error e) {
+            end();
+            throw e;
+        }
+    }
+
+    private void end() {
+        stage = Stage.OVER;
+        cancelDeadline();
+        awayPlayers.values().forEach(absence -> absence.resumeDeadline.cancel(false));
+        awayPlayers.clear();
+        gameState.players.forEach(p -> {
+            p.setKeepsSeat(false);
+            p.setAwaitingResume(false);
+        });
+        gameState.players.forEach(Player::resetOnDisconnect);
+        gameState.setRoundRunning(false);
+    }
+
+    // How a round gets the events that don't come from a player's packets. These may be called from any thread, and
+    // the table is expected to hand each event back to the round, one at a time like all of its events, by calling
+    // playerDisconnected(player), deadlinePassed() or resumeDeadlinePassed(player).
+    public interface Events {
+        void playerDisconnected(Player player);
+
+        Future<?> scheduleDeadline(long delayMillis);
+
+        Future<?> scheduleResumeDeadline(Player player, long delayMillis);
+    }
+
+    private static class Absence {
+        final Future<?> resumeDeadline;
+        final long resumeDeadlineNanos;
+
+        Absence(Future<?> resumeDeadline, long resumeDeadlineNanos) {
+            this.resumeDeadline = resumeDeadline;
+            this.resumeDeadlineNanos = resumeDeadlineNanos;
         }
     }
 
@@ -60,30 +337,21 @@ public class RoundRunner {
         ServerPacket roundEndPacket = new ServerPacket(ServerCode.ROUND_END);
         HashMap<Integer, Integer> gainedPointsMap = new HashMap<>();
         boolean endedEarly = gameState.players.stream().anyMatch(p -> !p.hand.isEmpty());
-        int shotTheMoonPlayerNum = -1;
-
-        PlayerList playersWithPoints = gameState.players.stream()
-                .filter(p -> !p.collectedPointCards.isEmpty())
-                .collect(Collectors.toCollection(PlayerList::new));
-        if(playersWithPoints.size() == 1) {
-            // If only one player has points, they've shot the moon. If a player shoots the moon, add 26 points to the
-            // accumulatedPoints of all other players.
-            Player shotTheMoon = playersWithPoints.get(0);
-            gameState.players.stream().filter(p -> p != shotTheMoon).forEach(p -> {
-                p.accumulatedPoints += 26;
-                gainedPointsMap.put(p.getPlayerNum(), 26);
-            });
-            shotTheMoonPlayerNum = shotTheMoon.getPlayerNum();
-            gainedPointsMap.put(shotTheMoonPlayerNum, 0);
-        } else {
-            // If no one shot the moon, add each player's collectedPointCards point sum to their accumulatedPoints
-            playersWithPoints.forEach(p -> {
-                int gainedPoints = p.collectedPointCards.stream().mapToInt(HeartsCard::getPoints).sum();
-                p.accumulatedPoints += gainedPoints;
-                gainedPointsMap.put(p.getPlayerNum(), gainedPoints);
-            });
-        }
 
+        int[] pointsTaken = gameState.players.stream()
+                .mapToInt(p -> HeartsRules.sumPoints(p.collectedPointCards))
+                .toArray();
+        int[] gainedPoints = HeartsRules.getGainedPoints(pointsTaken);
+        int shotTheMoon = HeartsRules.getShotTheMoon(pointsTaken);
+        for(int i = 0; i < gainedPoints.length; i++) {
+            Player p = gameState.players.get(i);
+            p.accumulatedPoints += gainedPoints[i];
+            // If no one shot the moon, only players who took points are in the map
+            if(shotTheMoon != -1 || pointsTaken[i] > 0) {
+                gainedPointsMap.put(p.getPlayerNum(), gainedPoints[i]);
+            }
+        }
+        int shotTheMoonPlayerNum = (shotTheMoon == -1) ? -1 : gameState.players.get(shotTheMoon).getPlayerNum();
 
         roundEndPacket.data.put("endedearly", endedEarly);
         roundEndPacket.data.put("shotthemoon", shotTheMoonPlayerNum);
@@ -92,6 +360,14 @@ public class RoundRunner {
         return roundEndPacket;
     }
 
+    private static ServerPacket sendWarheadsPacket(Player p, long timeLeftMillis) {
+        ServerPacket sendWarheadsPacket = new ServerPacket(ServerCode.SEND_WARHEADS);
+        if(timeLeftMillis > 0 && p.getProtocolVersion() >= Protocol.TURN_TIMERS) {
+            sendWarheadsPacket.data.put("timeleft", (int)timeLeftMillis);
+        }
+        return sendWarheadsPacket;
+    }
+
     private static void sendHands(GameState gameState) {
         gameState.players.forEach(p -> {
             ServerPacket handPacket = new ServerPacket(ServerCode.WAIT_FOR_HAND);
@@ -100,11 +376,9 @@ public class RoundRunner {
         });
     }
 
-    private static void tradeWarheads(GameState gameState) {
-        Map<Player, CardList<HeartsCard>> warheadsMap = getValidWarheadsFromAll(gameState);
-
+    private static void tradeWarheads(GameState gameState, Map<Player, CardSet> warheadsMap) {
         for(Player sender : warheadsMap.keySet()) {
-            CardList<HeartsCard> warheads = warheadsMap.get(sender);
+            CardSet warheads = warheadsMap.get(sender);
             ServerPacket warheadPacket = new ServerPacket(ServerCode.WAIT_FOR_WARHEADS);
             warheadPacket.data.put("warheads", warheads.toCardNumList());
 
@@ -113,96 +387,7 @@ public class RoundRunner {
             receiver.get().sendPacket(warheadPacket);
             receiver.get().hand.addAll(warheads);
 
-            sender.hand.removeAllByValue(warheads);
-        }
-    }
-
-    private static Map<Player, CardList<HeartsCard>> getValidWarheadsFromAll(GameState gameState)
-            throws PlayerDisconnectedException, MultiplePlayersDisconnectedException {
-        // If a thread detects that a player has disconnected, that thread will set the playerDisconnected flag to true
-        // and notify the main thread. The main thread will then interrupt the blocking waitForPacket() calls being made
-        // by the other threads. The other threads will detect the InterruptedException and exit. The main thread does
-        // not continue until all threads have exited.
-
-        gameState.players.sendPacketToAll(new ServerPacket(ServerCode.SEND_WARHEADS));
-
-        final Object waitObject = new Object();
-        final AtomicInteger numFinishedThreads = new AtomicInteger(0);
-        final AtomicBoolean playerDisconnected = new AtomicBoolean(false);
-        final Map<Player, CardList<HeartsCard>> allWarheads = new HashMap<>();
-        final Thread[] warheadThreads = new Thread[gameState.players.size()];
-        for(int i = 0, size = gameState.players.size(); i < size; i++) {
-            Player p = gameState.players.get(i);
-            warheadThreads[i] = new Thread(() -> {
-                while(true) {
-                    try {
-                        ClientPacket warheadPacket = p.waitForPacket();
-                        if(warheadPacket.networkCode != ClientCode.WARHEADS) {
-                            continue;
-                        }
-                        CardList<HeartsCard> warheads =
-                                Objects.requireNonNull((List<Integer>)(warheadPacket.data.get("warheads"))).stream()
-                                        .map(HeartsCard::new)
-                                        .collect(Collectors.toCollection(CardList::new));
-                        if(gameState.areValidWarheads(p, warheads)) {
-                            p.sendPacket(new ServerPacket(ServerCode.SUCCESSFUL_WARHEADS));
-                            synchronized(allWarheads) {
-                                allWarheads.put(p, warheads);
-                            }
-                            numFinishedThreads.incrementAndGet();
-                            synchronized(waitObject) {
-                                waitObject.notify();
-                            }
-                            return;
-                        } else {
-                            p.sendPacket(new ServerPacket(ServerCode.INVALID_WARHEADS));
-                        }
-                    } catch(InterruptedException e) {
-                        if(playerDisconnected.get()) {
-                            numFinishedThreads.incrementAndGet();
-                            synchronized(waitObject) {
-                                waitObject.notify();
-                            }
-                            return;
-                        }
-                    } catch(PlayerDisconnectedException e) {
-                        playerDisconnected.set(true);
-                        numFinishedThreads.incrementAndGet();
-                        synchronized(waitObject) {
-                            waitObject.notify();
-                        }
-                        return;
-                    } catch(NullPointerException | ClassCastException e) {
-                        p.sendPacket(new ServerPacket(ServerCode.INVALID_WARHEADS));
-                    }
-                }
-            });
+            sender.hand.removeAll(warheads);
         }
-        for(Thread t : warheadThreads) {
-            t.start();
-        }
-
-        boolean alreadyInterrupted = false;
-        while(numFinishedThreads.intValue() < warheadThreads.length) {
-            synchronized(waitObject) {
-                try {
-                    waitObject.wait();
-                } catch(InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
-            if(playerDisconnected.get() && !alreadyInterrupted) {
-                gameState.players.forEach(Player::interruptPacketWaiting);
-                alreadyInterrupted = true;
-            }
-        }
-        if(playerDisconnected.get()) {
-            Optional<Player> firstDisconnectedPlayer =
-                    gameState.players.stream().filter(p -> !p.socketIsConnected()).findAny();
-            assert firstDisconnectedPlayer.isPresent();
-            throw new PlayerDisconnectedException(firstDisconnectedPlayer.get());
-        }
-
-        return allWarheads;
     }
 }
@@ -1,18 +1,43 @@
 package com.sage.hearts.server.game;
 
-import com.sage.hearts.client.network.ClientCode;
 import com.sage.hearts.client.network.ClientPacket;
-import com.sage.hearts.server.network.PlayerDisconnectedException;
 import com.sage.hearts.server.network.ServerCode;
 import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.card.InvalidCardException;
 import com.sage.hearts.utils.card.Rank;
 import com.sage.hearts.utils.card.Suit;
 import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.hearts.HeartsRules;
+import com.sage.hearts.utils.hearts.PlayValidityResult;
+import com.sage.hearts.utils.network.Protocol;
 
+import java.util.List;
 import java.util.Objects;
 
+// Plays one trick. start() asks the first player for their play, and from then on the trick only moves forward when a
+// play arrives: each valid play either asks the next player for theirs or ends the trick.
 class TrickRunner {
-    static void playTrick(GameState gameState) {
+    private final GameState gameState;
+    private final long turnTimeoutMillis;
+
+    // Players whose clients understand PLAY_RESOLVED get that single packet per play instead of the usual burst
+    private final PlayerList batchedPlayers = new PlayerList();
+    private final PlayerList unbatchedPlayers = new PlayerList();
+    private boolean batchedPlayersKnowTurnPlayer = false;
+
+    private boolean over = false;
+
+    // turnTimeoutMillis is only used to tell players how long they have; RoundRunner keeps the actual deadline
+    TrickRunner(GameState gameState, long turnTimeoutMillis) {
+        this.gameState = gameState;
+        this.turnTimeoutMillis = turnTimeoutMillis;
+        for(Player p : gameState.players) {
+            (receivesPlayResolved(p) ? batchedPlayers : unbatchedPlayers).add(p);
+        }
+    }
+
+    void start() {
         gameState.resetForNewTrick();
         gameState.players.sendPacketToAll(new ServerPacket(ServerCode.TRICK_START));
 
@@ -21,30 +46,108 @@ class TrickRunner {
             for(Player p : gameState.players) {
                 if(p.hand.contains(Rank.TWO, Suit.CLUBS)) {
                     p.sendPacket(new ServerPacket(ServerCode.PLAY_TWO_OF_CLUBS));
-                    p.play = new HeartsCard(Rank.TWO, Suit.CLUBS);
+                    p.play = HeartsCard.of(Rank.TWO, Suit.CLUBS);
                     p.hand.remove(Rank.TWO, Suit.CLUBS);
 
                     gameState.startingPlayer = p;
                     gameState.basePlay = p.play;
                     gameState.leadingPlayer = p;
                     gameState.turnPlayer = p;
-                    sendNewPlay(gameState);
+                    sendNewPlay(gameState, p, unbatchedPlayers);
 
+                    // PLAY_RESOLVED would tell the holder their play went through, replacing the message that they
+                    // had the two of clubs, so they're only told who leads and whose turn it is
+                    PlayerList holder = new PlayerList(receivesPlayResolved(p) ? List.of(p) : List.of());
+                    sendLeadingPlayer(gameState, holder);
                     gameState.turnPlayer = getNextPlayer(gameState, gameState.turnPlayer);
+                    sendTurnPlayer(gameState, holder);
+                    sendPlayResolved(gameState, p, batchedPlayers, holder);
+                    batchedPlayersKnowTurnPlayer = true;
                     break;
                 }
             }
         }
         assert gameState.turnPlayer != null && gameState.startingPlayer != null;
 
-        do {
-            sendTurnPlayer(gameState);
-            setTurnPlayerPlay(gameState, getValidPlayFromTurnPlayer(gameState));
-            sendNewPlay(gameState);
-            sendLeadingPlayer(gameState);
-            gameState.turnPlayer = getNextPlayer(gameState, gameState.turnPlayer);
-        } while(gameState.turnPlayer != gameState.startingPlayer);
+        askTurnPlayerForPlay();
+    }
+
+    // Returns whether or not the play was accepted. PLAY packets from anyone but the turn player are ignored.
+    boolean playReceived(Player player, ClientPacket packet) {
+        if(over || player != gameState.turnPlayer) {
+            return false;
+        }
+
+        HeartsCard play;
+        try {
+            play = HeartsCard.of(Objects.requireNonNull((Integer)packet.data.get("play")));
+        } catch(NullPointerException | ClassCastException | InvalidCardException e) {
+            player.sendPacket(new ServerPacket(ServerCode.INVALID_PLAY));
+            return false;
+        }
+
+        PlayValidityResult validityResult = gameState.isValidPlay(player, play);
+        if(!validityResult.isValid) {
+            var invalidPlayServerPacket = new ServerPacket(ServerCode.INVALID_PLAY);
+            invalidPlayServerPacket.data.put("message", validityResult.message);
+            player.sendPacket(invalidPlayServerPacket);
+            return false;
+        }
+        // PLAY_RESOLVED tells batched players their play went through
+        if(!receivesPlayResolved(player)) {
+            var successfulPlayServerPacket = new ServerPacket(ServerCode.SUCCESSFUL_PLAY);
+            successfulPlayServerPacket.data.put("message", validityResult.message);
+            player.sendPacket(successfulPlayServerPacket);
+        }
+
+        makeTurnPlayerPlay(play, false);
+        return true;
+    }
+
+    // Plays the turn player's lowest valid card for them once their time is up
+    void autoPlay() {
+        if(!over) {
+            makeTurnPlayerPlay(HeartsCard.of(Long.numberOfTrailingZeros(gameState.getValidPlays(gameState.turnPlayer))),
+                    true);
+        }
+    }
+
+    boolean isOver() {
+        return over;
+    }
+
+    private void makeTurnPlayerPlay(HeartsCard play, boolean autoPlayed) {
+        Player player = gameState.turnPlayer;
+        setTurnPlayerPlay(gameState, play);
+
+        // A client that was played for may still be waiting on a play of its own, or not have picked one at all. It's
+        // sent its hand and told about the play the way clients without PLAY_RESOLVED are, which any client can follow.
+        PlayerList playedFor = new PlayerList(autoPlayed ? List.of(player) : List.of());
+        if(autoPlayed) {
+            ServerPacket handPacket = new ServerPacket(ServerCode.WAIT_FOR_HAND);
+            handPacket.data.put("hand", player.hand.toCardNumList());
+            player.sendPacket(handPacket);
+            player.sendPacket(newPlayPacket(player));
+            if(receivesPlayResolved(player)) {
+                sendLeadingPlayer(gameState, playedFor);
+            }
+        }
+
+        sendNewPlay(gameState, player, unbatchedPlayers);
+        sendLeadingPlayer(gameState, unbatchedPlayers);
+        gameState.turnPlayer = getNextPlayer(gameState, gameState.turnPlayer);
+        sendPlayResolved(gameState, player, batchedPlayers, playedFor);
+        batchedPlayersKnowTurnPlayer = true;
+
+        if(gameState.turnPlayer != gameState.startingPlayer) {
+            if(autoPlayed && receivesPlayResolved(player)) {
+                sendTurnPlayer(gameState, playedFor);
+            }
+            askTurnPlayerForPlay();
+            return;
+        }
 
+        over = true;
         gameState.leadingPlayer.collectedPointCards.addAll(gameState.pointCardsInTrick);
 
         ServerPacket trickEndPacket = new ServerPacket(ServerCode.TRICK_END);
@@ -52,84 +155,83 @@ class TrickRunner {
         gameState.players.sendPacketToAll(trickEndPacket);
     }
 
-    private static Player getNextPlayer(GameState gameState, final Player prev) {
+    private void askTurnPlayerForPlay() {
+        sendTurnPlayer(gameState, batchedPlayersKnowTurnPlayer ? unbatchedPlayers : gameState.players);
+        gameState.turnPlayer.sendPacket(makePlayPacket(turnTimeoutMillis));
+    }
+
+    // timeLeftMillis is 0 when there's no deadline for the play
+    ServerPacket makePlayPacket(long timeLeftMillis) {
+        ServerPacket makePlayPacket = new ServerPacket(ServerCode.MAKE_PLAY);
+        if(gameState.turnPlayer.getProtocolVersion() >= Protocol.VALID_PLAYS) {
+            // Lets the client turn down invalid plays itself instead of waiting on INVALID_PLAY
+            CardSet validPlays = new CardSet(gameState.getValidPlays(gameState.turnPlayer));
+            makePlayPacket.data.put("validplays", validPlays.toCardNumList());
+        }
+        if(timeLeftMillis > 0 && gameState.turnPlayer.getProtocolVersion() >= Protocol.TURN_TIMERS) {
+            makePlayPacket.data.put("timeleft", (int)timeLeftMillis);
+        }
+        return makePlayPacket;
+    }
+
+    static Player getNextPlayer(GameState gameState, final Player prev) {
         int nextIdx = gameState.players.indexOf(prev) + 1;
         return (nextIdx == gameState.players.size()) ? gameState.players.get(0) : gameState.players.get(nextIdx);
     }
 
-    private static void sendLeadingPlayer(GameState gameState) {
+    private static boolean receivesPlayResolved(Player p) {
+        return p.getProtocolVersion() >= Protocol.PLAY_RESOLVED;
+    }
+
+    private static void sendLeadingPlayer(GameState gameState, PlayerList recipients) {
         ServerPacket leadingPlayerPacket = new ServerPacket(ServerCode.WAIT_FOR_LEADING_PLAYER);
         leadingPlayerPacket.data.put("player", gameState.leadingPlayer.getPlayerNum());
-        gameState.players.sendPacketToAll(leadingPlayerPacket);
+        recipients.sendPacketToAll(leadingPlayerPacket);
+    }
+
+    private static void sendNewPlay(GameState gameState, Player playingPlayer, PlayerList recipients) {
+        recipients.sendPacketToAllExcluding(newPlayPacket(playingPlayer), playingPlayer);
     }
 
-    private static void sendNewPlay(GameState gameState) {
+    private static ServerPacket newPlayPacket(Player playingPlayer) {
         ServerPacket playPacket = new ServerPacket(ServerCode.WAIT_FOR_NEW_PLAY);
-        playPacket.data.put("player", gameState.turnPlayer.getPlayerNum());
-        playPacket.data.put("play", gameState.turnPlayer.play.getCardNum());
-        gameState.players.sendPacketToAllExcluding(playPacket, gameState.turnPlayer);
+        playPacket.data.put("player", playingPlayer.getPlayerNum());
+        playPacket.data.put("play", playingPlayer.play.getCardNum());
+        return playPacket;
     }
 
-    private static void sendTurnPlayer(GameState gameState) {
+    private static void sendTurnPlayer(GameState gameState, PlayerList recipients) {
         ServerPacket turnPlayerPacket = new ServerPacket(ServerCode.WAIT_FOR_TURN_PLAYER);
         turnPlayerPacket.data.put("player", gameState.turnPlayer.getPlayerNum());
-        gameState.players.sendPacketToAll(turnPlayerPacket);
+        recipients.sendPacketToAll(turnPlayerPacket);
+    }
+
+    // Must be called after gameState.turnPlayer has moved on to the player after playingPlayer
+    private static void sendPlayResolved(GameState gameState, Player playingPlayer, PlayerList recipients,
+                                         PlayerList excluded) {
+        ServerPacket playResolvedPacket = new ServerPacket(ServerCode.PLAY_RESOLVED);
+        playResolvedPacket.data.put("player", playingPlayer.getPlayerNum());
+        playResolvedPacket.data.put("play", playingPlayer.play.getCardNum());
+        playResolvedPacket.data.put("leader", gameState.leadingPlayer.getPlayerNum());
+        if(gameState.turnPlayer != gameState.startingPlayer) {
+            playResolvedPacket.data.put("turn", gameState.turnPlayer.getPlayerNum());
+        }
+        recipients.sendPacketToAllExcluding(playResolvedPacket, excluded.toArray(new Player[0]));
     }
 
     private static void setTurnPlayerPlay(GameState gameState, HeartsCard play) {
         gameState.turnPlayer.play = play;
-        gameState.turnPlayer.hand.remove(gameState.turnPlayer.play.getRank(), gameState.turnPlayer.play.getSuit());
+        gameState.turnPlayer.hand.remove(gameState.turnPlayer.play);
         if(gameState.turnPlayer.play.getPoints() > 0) {
             gameState.pointCardsInTrick.add(gameState.turnPlayer.play);
         }
+        gameState.heartsBroke = HeartsRules.isHeartsBrokenAfter(gameState.turnPlayer.play, gameState.basePlay,
+                gameState.heartsBroke);
         if(gameState.basePlay == null) {
             gameState.basePlay = gameState.turnPlayer.play;
             gameState.leadingPlayer = gameState.turnPlayer;
-        } else if(gameState.turnPlayer.play.getSuit() == gameState.leadingPlayer.play.getSuit()
-                && gameState.turnPlayer.play.getRank().rankNum > gameState.leadingPlayer.play.getRank().rankNum) {
+        } else if(HeartsRules.takesLead(gameState.turnPlayer.play, gameState.leadingPlayer.play)) {
             gameState.leadingPlayer = gameState.turnPlayer;
         }
     }
-
-    private static HeartsCard getValidPlayFromTurnPlayer(GameState gameState) {
-        HeartsCard play;
-        gameState.turnPlayer.sendPacket(new ServerPacket(ServerCode.MAKE_PLAY));
-        while(true) {
-            try {
-                ClientPacket packet = gameState.turnPlayer.waitForPacket();
-                if(packet.networkCode != ClientCode.PLAY) {
-                    continue;
-                }
-                play = new HeartsCard(Objects.requireNonNull((Integer)packet.data.get("play")));
-            } catch(InterruptedException e) {
-                var disconnectedPlayer = gameState.players.stream().filter(p -> !p.socketIsConnected()).findAny();
-                if(disconnectedPlayer.isPresent()) {
-                    gameState.players.forEach(Player::clearPacketQueue);
-                    throw new PlayerDisconnectedException(disconnectedPlayer.get());
-                }
-
-                if(!gameState.turnPlayer.socketIsConnected()) {
-                    gameState.players.forEach(Player::clearPacketQueue);
-                    throw new PlayerDisconnectedException(gameState.turnPlayer);
-                }
-
-                continue;
-            } catch(NullPointerException | ClassCastException e) {
-                gameState.turnPlayer.sendPacket(new ServerPacket(ServerCode.INVALID_PLAY));
-                continue;
-            }
-
-            PlayValidityResult validityResult;
-            if((validityResult = gameState.isValidPlay(gameState.turnPlayer, play)).isValid) {
-                var successfulPlayServerPacket = new ServerPacket(ServerCode.SUCCESSFUL_PLAY);
-                successfulPlayServerPacket.data.put("message", validityResult.message);
-                gameState.turnPlayer.sendPacket(successfulPlayServerPacket);
-                return play;
-            } else {
-                var invalidPlayServerPacket = new ServerPacket(ServerCode.INVALID_PLAY);
-                invalidPlayServerPacket.data.put("message", validityResult.message);
-                gameState.turnPlayer.sendPacket(invalidPlayServerPacket);
-            }
-        }
-    }
 }
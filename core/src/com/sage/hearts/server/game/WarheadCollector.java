@@ -0,0 +1,81 @@
+package com.sage.hearts.server.game;
+
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.network.ServerCode;
+import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.card.InvalidCardException;
+import com.sage.hearts.utils.hearts.HeartsRules;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Collects every player's warheads for RoundRunner. Each WARHEADS packet is checked as it arrives, and once every
+// player has had their warheads accepted they can all be traded at once.
+class WarheadCollector {
+    private final GameState gameState;
+    private final Map<Player, CardSet> allWarheads = new HashMap<>();
+
+    WarheadCollector(GameState gameState) {
+        this.gameState = gameState;
+    }
+
+    // Returns whether or not every player's warheads have now been accepted
+    boolean warheadsReceived(Player p, ClientPacket packet) {
+        // Players whose warheads were already accepted have nothing more to send
+        if(allWarheads.containsKey(p)) {
+            return isComplete();
+        }
+
+        CardSet warheads = new CardSet();
+        boolean accepted;
+        try {
+            for(Integer cardNum : Objects.requireNonNull((List<Integer>)(packet.data.get("warheads")))) {
+                warheads.add(cardNum);
+            }
+            accepted = gameState.areValidWarheads(p, warheads);
+        } catch(NullPointerException | ClassCastException | InvalidCardException e) {
+            accepted = false;
+        }
+
+        p.sendPacket(new ServerPacket(accepted ? ServerCode.SUCCESSFUL_WARHEADS : ServerCode.INVALID_WARHEADS));
+        if(accepted) {
+            allWarheads.put(p, warheads);
+        }
+        return isComplete();
+    }
+
+    // Picks the highest cards of everyone whose warheads haven't been accepted yet. Their clients are sent their hand
+    // without those cards and then SUCCESSFUL_WARHEADS, which is enough for any client to catch up.
+    void pickRemainingWarheads() {
+        for(Player p : gameState.players) {
+            if(allWarheads.containsKey(p)) {
+                continue;
+            }
+
+            CardSet warheads = new CardSet();
+            long remaining = p.hand.getBits();
+            for(int i = 0; i < HeartsRules.NUM_WARHEADS; i++) {
+                long highest = Long.highestOneBit(remaining);
+                warheads.add(Long.numberOfTrailingZeros(highest));
+                remaining &= ~highest;
+            }
+            allWarheads.put(p, warheads);
+
+            ServerPacket handPacket = new ServerPacket(ServerCode.WAIT_FOR_HAND);
+            handPacket.data.put("hand", new CardSet(remaining).toCardNumList());
+            p.sendPacket(handPacket);
+            p.sendPacket(new ServerPacket(ServerCode.SUCCESSFUL_WARHEADS));
+        }
+    }
+
+    private boolean isComplete() {
+        return allWarheads.size() == gameState.players.size();
+    }
+
+    Map<Player, CardSet> getAllWarheads() {
+        return allWarheads;
+    }
+}
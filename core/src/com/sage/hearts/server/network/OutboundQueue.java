@@ -0,0 +1,88 @@
+package com.sage.hearts.server.network;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Frames waiting to be written to one connection. The game thread adds frames and the connection's writer drains all
+// of them at once, so frames sent back to back (e.g. a play followed by the next turn) go out in a single write.
+// The queue holds at most maxBytes of frames; what happens past that is decided by the OverflowPolicy. A single frame
+// bigger than maxBytes is still accepted when the queue is empty.
+public class OutboundQueue {
+    // Longest a write waits for space under OverflowPolicy.BLOCK before the connection is given up on
+    public static final long BLOCK_TIMEOUT_MILLIS = 5000;
+
+    private final int maxBytes;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ArrayDeque<byte[]> frames = new ArrayDeque<>();
+    private int queuedBytes = 0;
+    private boolean closed = false;
+
+    public OutboundQueue(int maxBytes, OverflowPolicy overflowPolicy) {
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    // Returns true if the queue was empty, i.e. the writer might need to be woken up
+    public boolean add(byte[] frame) throws IOException {
+        return add(frame, true);
+    }
+
+    // Like add(frame), but a full queue fails the write straight away unless mayWait is set, whatever the policy
+    public synchronized boolean add(byte[] frame, boolean mayWait) throws IOException {
+        long deadline = System.currentTimeMillis() + BLOCK_TIMEOUT_MILLIS;
+        while(!closed && !frames.isEmpty() && queuedBytes + frame.length > maxBytes) {
+            long remainingMillis = deadline - System.currentTimeMillis();
+            if(overflowPolicy == OverflowPolicy.DISCONNECT || !mayWait || remainingMillis <= 0) {
+                throw new IOException("Outbound queue overflowed (" + queuedBytes + " bytes queued)");
+            }
+            try {
+                wait(remainingMillis);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for outbound queue space");
+            }
+        }
+        if(closed) {
+            throw new IOException("Connection is closed");
+        }
+
+        boolean wasEmpty = frames.isEmpty();
+        frames.add(frame);
+        queuedBytes += frame.length;
+        notifyAll();
+        return wasEmpty;
+    }
+
+    // Removes and returns every queued frame, or an empty list if there are none
+    public synchronized List<byte[]> drain() {
+        List<byte[]> drained = new ArrayList<>(frames);
+        frames.clear();
+        queuedBytes = 0;
+        notifyAll();
+        return drained;
+    }
+
+    // Like drain(), but waits until there is at least one frame. Returns an empty list once the queue is closed.
+    public synchronized List<byte[]> awaitDrain() throws InterruptedException {
+        while(!closed && frames.isEmpty()) {
+            wait();
+        }
+        return closed ? List.of() : drain();
+    }
+
+    public synchronized boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    // Discards every queued frame and fails any write still waiting for space
+    public synchronized void close() {
+        closed = true;
+        frames.clear();
+        queuedBytes = 0;
+        notifyAll();
+    }
+}
@@ -0,0 +1,12 @@
+package com.sage.hearts.server.network;
+
+// What a connection does when a frame is written while its outbound queue is already full
+public enum OverflowPolicy {
+    // The connection is treated as lost, so the write fails and the player is dropped like any other disconnect
+    DISCONNECT,
+    // The writing thread waits until the connection has drained enough of its queue, for up to
+    // OutboundQueue.BLOCK_TIMEOUT_MILLIS, after which the connection is dropped as with DISCONNECT. While it waits, the
+    // thread (a socket reader or one of the shared table threads) does nothing else. I/O loop threads never wait,
+    // since they may be the ones that have to drain the queue, so writes from them are handled as with DISCONNECT.
+    BLOCK
+}
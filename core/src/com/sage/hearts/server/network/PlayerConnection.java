@@ -0,0 +1,24 @@
+package com.sage.hearts.server.network;
+
+import java.io.IOException;
+
+// A connection to a single player. Every frame on the wire is a 4 byte length followed by that many bytes of packet.
+public interface PlayerConnection {
+    // Incoming frames are only delivered once this has been called, and are delivered one at a time, in order
+    void start(FrameListener listener);
+
+    // frame is the packet bytes only; the length prefix is added by the connection. The same frame may be written to
+    // many connections, so connections must not modify it.
+    void write(byte[] frame) throws IOException;
+
+    boolean isConnected();
+
+    // Closing a connection locally does not call FrameListener.connectionLost()
+    void close();
+
+    interface FrameListener {
+        void frameReceived(byte[] frame);
+
+        void connectionLost();
+    }
+}
@@ -0,0 +1,355 @@
+package com.sage.hearts.server.network;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Accepts and serves every player connection on a small, fixed number of threads using non-blocking channels.
+// Connections are spread round-robin over the I/O loops; each loop reads frames and flushes queued writes for all of
+// its connections. Incoming frames are delivered on the I/O loop's thread, so frame listeners must not block.
+public class SelectorTransport {
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+    private static final int INITIAL_READ_BUFFER_SIZE = 8192;
+    // Set on I/O loop threads, which must never wait for queue space since they may be the ones that have to drain it
+    private static final ThreadLocal<Boolean> onIoLoop = ThreadLocal.withInitial(() -> false);
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector acceptSelector;
+    private final IoLoop[] ioLoops;
+    private final ConnectionAcceptedListener acceptedListener;
+    private final int maxQueuedBytes;
+    private final OverflowPolicy overflowPolicy;
+    private int nextIoLoop = 0;
+
+    private volatile boolean closed = false;
+
+    public SelectorTransport(int port, int numIoThreads, int maxQueuedBytes, OverflowPolicy overflowPolicy,
+                             ConnectionAcceptedListener acceptedListener) throws IOException {
+        this.acceptedListener = acceptedListener;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.overflowPolicy = overflowPolicy;
+
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            acceptSelector = Selector.open();
+            serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+            ioLoops = new IoLoop[Math.max(1, numIoThreads)];
+            for(int i = 0; i < ioLoops.length; i++) {
+                ioLoops[i] = new IoLoop();
+            }
+        } catch(IOException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
+
+    // Starts the I/O loops and then accepts connections on the calling thread until close() is called
+    public void run() {
+        for(int i = 0; i < ioLoops.length; i++) {
+            Thread ioThread = new Thread(ioLoops[i], "Server I/O " + i);
+            ioThread.setDaemon(true);
+            ioThread.start();
+        }
+
+        while(!closed) {
+            try {
+                acceptSelector.select();
+                acceptSelector.selectedKeys().clear();
+                SocketChannel channel;
+                while((channel = serverChannel.accept()) != null) {
+                    acceptChannel(channel);
+                }
+            } catch(ClosedChannelException | ClosedSelectorException e) {
+                break;
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void acceptChannel(SocketChannel channel) {
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch(IOException e) {
+            try {
+                channel.close();
+            } catch(IOException e1) {
+                // The channel is being thrown away anyway
+            }
+            return;
+        }
+        IoLoop ioLoop = ioLoops[nextIoLoop];
+        nextIoLoop = (nextIoLoop + 1) % ioLoops.length;
+        acceptedListener.connectionAccepted(new ChannelPlayerConnection(channel, ioLoop,
+                new OutboundQueue(maxQueuedBytes, overflowPolicy)));
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            serverChannel.close();
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
+        acceptSelector.wakeup();
+        for(IoLoop ioLoop : ioLoops) {
+            ioLoop.selector.wakeup();
+        }
+    }
+
+    public interface ConnectionAcceptedListener {
+        // Called on the accepting thread. The connection won't read anything until it has been started.
+        void connectionAccepted(PlayerConnection connection);
+    }
+
+    private class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<ChannelPlayerConnection> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<ChannelPlayerConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+        IoLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        void register(ChannelPlayerConnection connection) {
+            pendingRegistrations.add(connection);
+            selector.wakeup();
+        }
+
+        void requestWrite(ChannelPlayerConnection connection) {
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            onIoLoop.set(true);
+            while(!closed) {
+                try {
+                    selector.select();
+                } catch(IOException e) {
+                    e.printStackTrace();
+                    break;
+                }
+
+                ChannelPlayerConnection connection;
+                while((connection = pendingRegistrations.poll()) != null) {
+                    connection.register(selector);
+                }
+                while((connection = pendingWrites.poll()) != null) {
+                    connection.flushWrites();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    connection = (ChannelPlayerConnection)key.attachment();
+                    if(key.isValid() && key.isReadable()) {
+                        connection.readFrames();
+                    }
+                    if(key.isValid() && key.isWritable()) {
+                        connection.flushWrites();
+                    }
+                }
+            }
+
+            for(SelectionKey key : selector.keys()) {
+                ((ChannelPlayerConnection)key.attachment()).connectionLost();
+            }
+            try {
+                selector.close();
+            } catch(IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Everything except start(), write() and close() is only called by the connection's I/O loop
+    private static class ChannelPlayerConnection implements PlayerConnection {
+        private final SocketChannel channel;
+        private final IoLoop ioLoop;
+        private SelectionKey key;
+        private FrameListener listener;
+
+        private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+        private final OutboundQueue outbound;
+        // Length headers and frames drained from outbound that the channel hasn't fully accepted yet
+        private final ArrayDeque<ByteBuffer> inFlight = new ArrayDeque<>();
+        private final AtomicBoolean writeRequested = new AtomicBoolean(false);
+
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        ChannelPlayerConnection(SocketChannel channel, IoLoop ioLoop, OutboundQueue outbound) {
+            this.channel = channel;
+            this.ioLoop = ioLoop;
+            this.outbound = outbound;
+        }
+
+        @Override
+        public void start(FrameListener listener) {
+            this.listener = listener;
+            ioLoop.register(this);
+        }
+
+        // Frames are written by the I/O loop, so this only blocks if the outbound queue is full, the overflow policy is
+        // BLOCK, and it isn't called from an I/O loop. A frame the queue turns away closes the connection, the same way
+        // under either policy. Frames still queued when the connection is closed are discarded.
+        @Override
+        public void write(byte[] frame) throws IOException {
+            if(closed.get()) {
+                throw new IOException("Connection is closed");
+            }
+            boolean wasEmpty;
+            try {
+                wasEmpty = outbound.add(frame, !onIoLoop.get());
+            } catch(IOException e) {
+                Gdx.app.log("SelectorTransport", e.getMessage() + ", closing connection");
+                close();
+                throw e;
+            }
+            // Only an empty queue can need the I/O loop woken up, and then only if nobody else has asked already
+            if(wasEmpty && writeRequested.compareAndSet(false, true)) {
+                ioLoop.requestWrite(this);
+            }
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !closed.get() && channel.isConnected();
+        }
+
+        @Override
+        public void close() {
+            if(closed.compareAndSet(false, true)) {
+                closeChannel();
+            }
+        }
+
+        private void register(Selector selector) {
+            try {
+                // Anything written before the connection was registered is flushed as soon as the channel is writable
+                int interestOps = outbound.isEmpty()
+                        ? SelectionKey.OP_READ
+                        : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+                key = channel.register(selector, interestOps, this);
+            } catch(ClosedChannelException e) {
+                connectionLost();
+            }
+        }
+
+        private void readFrames() {
+            try {
+                if(channel.read(readBuffer) < 0) {
+                    connectionLost();
+                    return;
+                }
+            } catch(IOException e) {
+                connectionLost();
+                return;
+            }
+
+            readBuffer.flip();
+            int neededCapacity = 0;
+            while(readBuffer.remaining() >= Integer.BYTES) {
+                int frameSize = readBuffer.getInt(readBuffer.position());
+                if(frameSize < 0 || frameSize > MAX_FRAME_SIZE) {
+                    connectionLost();
+                    return;
+                }
+                if(readBuffer.remaining() < Integer.BYTES + frameSize) {
+                    neededCapacity = Integer.BYTES + frameSize;
+                    break;
+                }
+
+                readBuffer.getInt();
+                byte[] frame = new byte[frameSize];
+                readBuffer.get(frame);
+                try {
+                    listener.frameReceived(frame);
+                } catch(RuntimeException e) {
+                    // A misbehaving handler must not take the whole I/O loop down with it
+                    e.printStackTrace();
+                }
+                if(closed.get()) {
+                    return;
+                }
+            }
+
+            if(neededCapacity > readBuffer.capacity()) {
+                ByteBuffer grownBuffer = ByteBuffer.allocate(neededCapacity);
+                grownBuffer.put(readBuffer);
+                readBuffer = grownBuffer;
+            } else {
+                readBuffer.compact();
+            }
+        }
+
+        private void flushWrites() {
+            writeRequested.set(false);
+            if(key == null || !key.isValid()) {
+                return;
+            }
+
+            try {
+                while(true) {
+                    if(inFlight.isEmpty()) {
+                        // Everything queued since the last write goes out together in one gathering write. Frames may
+                        // be shared with other connections, so they're wrapped rather than copied.
+                        for(byte[] frame : outbound.drain()) {
+                            inFlight.add(ByteBuffer.allocate(Integer.BYTES).putInt(frame.length).flip());
+                            inFlight.add(ByteBuffer.wrap(frame).asReadOnlyBuffer());
+                        }
+                        if(inFlight.isEmpty()) {
+                            break;
+                        }
+                    }
+
+                    channel.write(inFlight.toArray(new ByteBuffer[0]));
+                    while(!inFlight.isEmpty() && !inFlight.peek().hasRemaining()) {
+                        inFlight.poll();
+                    }
+                    if(!inFlight.isEmpty()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch(IOException | CancelledKeyException e) {
+                connectionLost();
+            }
+        }
+
+        private void connectionLost() {
+            if(closed.compareAndSet(false, true)) {
+                closeChannel();
+                if(listener != null) {
+                    listener.connectionLost();
+                }
+            }
+        }
+
+        private void closeChannel() {
+            outbound.close();
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // The channel is being thrown away anyway
+            }
+        }
+    }
+}
@@ -1,35 +1,73 @@
 package com.sage.hearts.server.network;
 
 import com.sage.hearts.utils.network.NetworkCode;
+import com.sage.hearts.utils.network.PacketField;
+
+import static com.sage.hearts.utils.network.PacketField.*;
 
 public enum ServerCode implements NetworkCode {
     // General codes:
     PING,
-    CONNECTION_ACCEPTED,
+    CONNECTION_ACCEPTED(intField("protocol"), stringField("session")),
     CONNECTION_DENIED,
     PLAYER_DISCONNECTED,
     COULD_NOT_START_GAME,
     UNSUCCESSFUL_NAME_CHANGE,
-    WAIT_FOR_PLAYERS,
-    NEW_PLAYER_POINTS,
+    WAIT_FOR_PLAYERS(stringMapField("players"), intMapField("points"), intField("host"), intField("you")),
+    NEW_PLAYER_POINTS(intField("player"), intField("points")),
 
     // Trick codes:
     TRICK_START,
     PLAY_TWO_OF_CLUBS,
-    MAKE_PLAY,
-    INVALID_PLAY,
-    SUCCESSFUL_PLAY,
-    WAIT_FOR_TURN_PLAYER,
-    WAIT_FOR_NEW_PLAY,
-    WAIT_FOR_LEADING_PLAYER,
-    TRICK_END,
+    // validplays is only sent to players using Protocol.VALID_PLAYS or later, and timeleft, in milliseconds, only to
+    // players using Protocol.TURN_TIMERS or later
+    MAKE_PLAY(cardSetField("validplays"), intField("timeleft")),
+    INVALID_PLAY(stringField("message")),
+    SUCCESSFUL_PLAY(stringField("message")),
+    WAIT_FOR_TURN_PLAYER(intField("player")),
+    WAIT_FOR_NEW_PLAY(intField("player"), cardField("play")),
+    WAIT_FOR_LEADING_PLAYER(intField("player")),
+    TRICK_END(intField("winner")),
 
     // Round codes:
-    ROUND_START,
-    WAIT_FOR_HAND,
-    SEND_WARHEADS,
+    ROUND_START(intMapField("warheadmap"), intArrayField("playerorder")),
+    WAIT_FOR_HAND(cardSetField("hand")),
+    SEND_WARHEADS(intField("timeleft")), // Sent the same way as MAKE_PLAY's timeleft
     INVALID_WARHEADS,
     SUCCESSFUL_WARHEADS,
-    WAIT_FOR_WARHEADS,
-    ROUND_END,
+    WAIT_FOR_WARHEADS(cardSetField("warheads")),
+    ROUND_END(booleanField("endedearly"), intField("shotthemoon"), intMapField("gainedpointsmap")),
+
+    // Protocol codes:
+    PROTOCOL_SELECTED(intField("version")),
+
+    // Sent instead of the per play packets to players using Protocol.PLAY_RESOLVED or later. turn is left out once
+    // the trick is over.
+    PLAY_RESOLVED(intField("player"), cardField("play"), intField("leader"), intField("turn")),
+
+    // Resume codes:
+    // Sent to a player who has just resumed their seat or sent REQUEST_SNAPSHOT, after WAIT_FOR_PLAYERS and before
+    // MAKE_PLAY or SEND_WARHEADS if the round is waiting on them. plays holds the current trick's plays, and taken
+    // says who took each point card in earlier tricks. turn and leader are left out when there's no turn player or no
+    // plays yet.
+    GAME_SNAPSHOT(intArrayField("playerorder"), intMapField("warheadmap"), cardSetField("hand"), intMapField("plays"),
+            intMapField("taken"), booleanField("heartsbroke"), intField("turn"), intField("leader")),
+    // Only sent to players using Protocol.RESUME or later. timeleft is how long the player has to come back before
+    // the round is called off.
+    PLAYER_AWAY(intField("player"), intField("timeleft")),
+    PLAYER_BACK(intField("player")),
+    // Sent after WAIT_FOR_PLAYERS, instead of GAME_SNAPSHOT, to a player who sent REQUEST_SNAPSHOT while no round is
+    // running
+    NO_ROUND;
+
+    private final PacketField[] fields;
+
+    ServerCode(PacketField... fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public PacketField[] getFields() {
+        return fields;
+    }
 }
@@ -1,9 +1,19 @@
 package com.sage.hearts.server.network;
 
 import com.badlogic.gdx.utils.SerializationException;
+import com.sage.hearts.utils.network.BinaryPacketCodec;
 import com.sage.hearts.utils.network.Packet;
+import com.sage.hearts.utils.network.PacketCodec;
+import com.sage.hearts.utils.network.SerializationPacketCodec;
 
 public class ServerPacket extends Packet<ServerCode> {
+    // Pinned to the value Java computed before the codecs existed, so older versions can still read legacy packets
+    private static final long serialVersionUID = 3063634278933604765L;
+
+    public static final PacketCodec<ServerPacket> LEGACY_CODEC = new SerializationPacketCodec<>(ServerPacket.class);
+    public static final PacketCodec<ServerPacket> BINARY_CODEC =
+            new BinaryPacketCodec<>(ServerCode.class, ServerPacket::new);
+
     public ServerPacket() {
         super();
     }
@@ -20,6 +30,15 @@ public class ServerPacket extends Packet<ServerCode> {
         }
     }
 
+    // Frames are decoded according to their first byte, so neither side needs to know when the other switched codecs
+    public static ServerPacket decode(byte[] frame) throws SerializationException {
+        if(frame.length > 0 && frame[0] == BinaryPacketCodec.FRAME_MARKER) {
+            return BINARY_CODEC.decode(frame);
+        } else {
+            return LEGACY_CODEC.decode(frame);
+        }
+    }
+
     public static ServerPacket pingPacket() {
         return new ServerPacket(ServerCode.PING);
     }
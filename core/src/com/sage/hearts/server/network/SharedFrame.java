@@ -0,0 +1,27 @@
+package com.sage.hearts.server.network;
+
+import com.badlogic.gdx.utils.SerializationException;
+import com.sage.hearts.utils.network.PacketCodec;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// A packet that is encoded at most once per codec no matter how many players it is sent to. The encoded bytes are
+// handed to every recipient's connection as is, so they must never be modified.
+public class SharedFrame {
+    public final ServerPacket packet;
+    private final Map<PacketCodec<ServerPacket>, byte[]> encodings = new IdentityHashMap<>(2);
+
+    public SharedFrame(ServerPacket packet) {
+        this.packet = packet;
+    }
+
+    public synchronized byte[] encodedWith(PacketCodec<ServerPacket> codec) throws SerializationException {
+        byte[] bytes = encodings.get(codec);
+        if(bytes == null) {
+            bytes = codec.encode(packet);
+            encodings.put(codec, bytes);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,108 @@
+package com.sage.hearts.server.network;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.net.Socket;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+// A PlayerConnection over a blocking socket. Each connection reads in one task and writes in another on executor,
+// which must be able to run every connection's tasks at once. write() only queues the frame, so a slow client never
+// holds up the thread sending to it unless its queue fills up and the overflow policy is BLOCK, and then only for up to
+// OutboundQueue.BLOCK_TIMEOUT_MILLIS.
+public class SocketPlayerConnection implements PlayerConnection {
+    private final Socket socket;
+    private final Executor executor;
+    private final OutboundQueue outbound;
+    private final DataOutputStream output;
+    private final DataInputStream input;
+
+    private volatile boolean closed = false;
+
+    public SocketPlayerConnection(Socket socket, Executor executor, int maxQueuedBytes, OverflowPolicy overflowPolicy) {
+        this.socket = socket;
+        this.executor = executor;
+        this.outbound = new OutboundQueue(maxQueuedBytes, overflowPolicy);
+
+        output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    @Override
+    public void start(FrameListener listener) {
+        executor.execute(this::writeFrames);
+        executor.execute(() -> {
+            while(isConnected()) {
+                try {
+                    int frameSize = input.readInt();
+                    if(frameSize < 0 || frameSize > SelectorTransport.MAX_FRAME_SIZE) {
+                        throw new IOException("Invalid frame size " + frameSize);
+                    }
+                    listener.frameReceived(input.readNBytes(frameSize));
+                } catch(IOException e) {
+                    if(!closed) {
+                        Gdx.app.log("SocketPlayerConnection", "Encountered IOException, dropping connection");
+                        listener.connectionLost();
+                    }
+                    return;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void write(byte[] frame) throws IOException {
+        if(closed) {
+            throw new IOException("Connection is closed");
+        }
+        try {
+            outbound.add(frame);
+        } catch(IOException e) {
+            // A frame the queue turns away closes the connection, the same way under either overflow policy
+            Gdx.app.log("SocketPlayerConnection", e.getMessage() + ", closing connection");
+            close();
+            throw e;
+        }
+    }
+
+    private void writeFrames() {
+        try {
+            List<byte[]> frames;
+            while(!(frames = outbound.awaitDrain()).isEmpty()) {
+                // Everything queued since the last write is flushed together
+                for(byte[] frame : frames) {
+                    output.writeInt(frame.length);
+                    output.write(frame);
+                }
+                output.flush();
+            }
+        } catch(IOException e) {
+            // Disposing the socket makes the reader fail too, and it's the one that reports the lost connection
+            disposeSocket();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        outbound.close();
+        disposeSocket();
+    }
+
+    private void disposeSocket() {
+        try {
+            socket.dispose();
+        } catch(GdxRuntimeException e) {
+            // The socket is being thrown away anyway
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.sage.hearts.simulation;
+
+import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.card.Rank;
+import com.sage.hearts.utils.card.Suit;
+import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.hearts.HeartsRules;
+
+// Plays like a careful beginner: passes its most dangerous cards, ducks under the winning card whenever it can, and
+// gets rid of the queen of spades and high hearts as soon as it can't follow suit. Every decision is a single pass over
+// the hand, so it takes microseconds.
+public class HeuristicStrategy implements Strategy {
+    @Override
+    public CardList<HeartsCard> chooseWarheads(SeatView view) {
+        CardList<HeartsCard> sorted = new CardList<>(view.getHand());
+        sorted.sort((a, b) -> Integer.compare(getDanger(b), getDanger(a)));
+        return new CardList<>(sorted.subList(0, HeartsRules.NUM_WARHEADS));
+    }
+
+    @Override
+    public HeartsCard choosePlay(SeatView view, CardList<HeartsCard> validPlays) {
+        HeartsCard basePlay = view.getBasePlay();
+        if(basePlay == null) {
+            return getLowestLead(validPlays);
+        }
+
+        // Either every valid play follows suit or none of them do
+        if(validPlays.get(0).getSuit() != basePlay.getSuit()) {
+            return getMostDangerous(validPlays);
+        }
+
+        HeartsCard highestLoser = null;
+        for(HeartsCard c : validPlays) {
+            if(!HeartsRules.takesLead(c, view.getLeadingPlay())
+                    && (highestLoser == null || c.getRank().rankNum > highestLoser.getRank().rankNum)) {
+                highestLoser = c;
+            }
+        }
+        if(highestLoser != null) {
+            return highestLoser;
+        }
+
+        // The trick can't be dodged, so take it with the highest card that isn't the queen of spades
+        HeartsCard highest = null;
+        for(HeartsCard c : validPlays) {
+            if(highest == null || isQueenOfSpades(highest)
+                    || (!isQueenOfSpades(c) && c.getRank().rankNum > highest.getRank().rankNum)) {
+                highest = c;
+            }
+        }
+        return highest;
+    }
+
+    private static HeartsCard getLowestLead(CardList<HeartsCard> validPlays) {
+        HeartsCard lowest = null;
+        for(HeartsCard c : validPlays) {
+            if(lowest == null
+                    || (lowest.getSuit() == Suit.HEARTS && c.getSuit() != Suit.HEARTS)
+                    || ((lowest.getSuit() == Suit.HEARTS) == (c.getSuit() == Suit.HEARTS)
+                            && c.getRank().rankNum < lowest.getRank().rankNum)) {
+                lowest = c;
+            }
+        }
+        return lowest;
+    }
+
+    private static HeartsCard getMostDangerous(CardList<HeartsCard> cards) {
+        HeartsCard mostDangerous = null;
+        for(HeartsCard c : cards) {
+            if(mostDangerous == null || getDanger(c) > getDanger(mostDangerous)) {
+                mostDangerous = c;
+            }
+        }
+        return mostDangerous;
+    }
+
+    private static int getDanger(HeartsCard c) {
+        if(isQueenOfSpades(c)) {
+            return 100;
+        } else if(c.getSuit() == Suit.SPADES && c.getRank().rankNum > Rank.QUEEN.rankNum) {
+            return 80 + c.getRank().rankNum;
+        } else if(c.getSuit() == Suit.HEARTS) {
+            return 20 + c.getRank().rankNum;
+        } else {
+            return c.getRank().rankNum;
+        }
+    }
+
+    private static boolean isQueenOfSpades(HeartsCard c) {
+        return c.getSuit() == Suit.SPADES && c.getRank() == Rank.QUEEN;
+    }
+}
@@ -0,0 +1,31 @@
+package com.sage.hearts.simulation;
+
+import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.hearts.HeartsRules;
+
+import java.util.Random;
+
+// Passes and plays uniformly random cards. Useful as a baseline to measure other strategies against.
+public class RandomStrategy implements Strategy {
+    private final Random random;
+
+    public RandomStrategy(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public CardList<HeartsCard> chooseWarheads(SeatView view) {
+        CardList<HeartsCard> remaining = new CardList<>(view.getHand());
+        CardList<HeartsCard> warheads = new CardList<>();
+        for(int i = 0; i < HeartsRules.NUM_WARHEADS; i++) {
+            warheads.add(remaining.remove(random.nextInt(remaining.size())));
+        }
+        return warheads;
+    }
+
+    @Override
+    public HeartsCard choosePlay(SeatView view, CardList<HeartsCard> validPlays) {
+        return validPlays.get(random.nextInt(validPlays.size()));
+    }
+}
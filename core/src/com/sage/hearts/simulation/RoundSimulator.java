@@ -0,0 +1,206 @@
+package com.sage.hearts.simulation;
+
+import com.sage.hearts.utils.card.Card;
+import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.card.Deck;
+import com.sage.hearts.utils.card.Rank;
+import com.sage.hearts.utils.card.Suit;
+import com.sage.hearts.utils.hearts.HeartsCard;
+import com.sage.hearts.utils.hearts.HeartsRules;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Plays whole rounds in memory between HeartsRules.NUM_PLAYERS strategies, by the same rules as the server but
+// without any players, connections or threads. A simulator is not thread safe; to simulate in parallel, give each
+// thread its own simulator (and its own SplittableRandom, for example from split()). The deals only depend on the
+// SplittableRandom, so a simulator made with the same seed deals the same rounds again.
+public class RoundSimulator {
+    private static final int TWO_OF_CLUBS = Card.getCardNumFromRankAndSuit(Rank.TWO, Suit.CLUBS);
+
+    private final Seat[] seats = new Seat[HeartsRules.NUM_PLAYERS];
+    private final CardSet[] hands = new CardSet[HeartsRules.NUM_PLAYERS];
+    private final int[] accumulatedPoints = new int[HeartsRules.NUM_PLAYERS];
+    private final Deck deck;
+
+    private final CardList<HeartsCard> playsInTrick = new CardList<>();
+    private HeartsCard basePlay = null;
+    private HeartsCard leadingPlay = null;
+    private int leadingSeat = 0;
+    private int tricksPlayed = 0;
+    private boolean heartsBroke = false;
+    private int roundsPlayed = 0;
+
+    public RoundSimulator(SplittableRandom random, Strategy... strategies) {
+        if(strategies.length != HeartsRules.NUM_PLAYERS) {
+            throw new IllegalArgumentException("Exactly " + HeartsRules.NUM_PLAYERS + " strategies are needed");
+        }
+        this.deck = new Deck(false, random);
+        for(int i = 0; i < seats.length; i++) {
+            seats[i] = new Seat(strategies[i]);
+            hands[i] = seats[i].hand;
+        }
+    }
+
+    // Plays one round and returns the points each seat gained in it. Like on the server, each seat passes its
+    // warheads to the seat 1, 2, then 3 places after it, cycling every round.
+    public int[] playRound() {
+        int passOffset = (roundsPlayed % (HeartsRules.NUM_PLAYERS - 1)) + 1;
+        roundsPlayed++;
+
+        deal();
+        passWarheads(passOffset);
+
+        tricksPlayed = 0;
+        heartsBroke = false;
+        int leader = 0;
+        while(!seats[leader].hand.contains(TWO_OF_CLUBS)) {
+            leader++;
+        }
+        do {
+            leader = playTrick(leader);
+        } while(anySeatHasPoints());
+
+        int[] pointsTaken = new int[seats.length];
+        for(int i = 0; i < seats.length; i++) {
+            pointsTaken[i] = seats[i].pointsTaken;
+        }
+        int[] gainedPoints = HeartsRules.getGainedPoints(pointsTaken);
+        for(int i = 0; i < seats.length; i++) {
+            accumulatedPoints[i] += gainedPoints[i];
+        }
+        return gainedPoints;
+    }
+
+    public int[] getAccumulatedPoints() {
+        return Arrays.copyOf(accumulatedPoints, accumulatedPoints.length);
+    }
+
+    public int getRoundsPlayed() {
+        return roundsPlayed;
+    }
+
+    private void deal() {
+        for(Seat seat : seats) {
+            seat.hand.clear();
+            seat.pointsTaken = 0;
+        }
+        deck.shuffle();
+        deck.deal(hands);
+    }
+
+    private void passWarheads(int passOffset) {
+        CardSet[] allWarheads = new CardSet[seats.length];
+        for(int i = 0; i < seats.length; i++) {
+            CardList<HeartsCard> warheads = seats[i].strategy.chooseWarheads(seats[i]);
+            CardSet warheadSet = (warheads == null) ? null : new CardSet(warheads);
+            if(warheadSet == null || warheadSet.size() != HeartsRules.NUM_WARHEADS
+                    || warheads.size() != HeartsRules.NUM_WARHEADS || !seats[i].hand.containsAll(warheadSet)) {
+                throw new IllegalStateException("Seat " + i + " chose invalid warheads " + warheads);
+            }
+            allWarheads[i] = warheadSet;
+        }
+        // Every seat chooses from the hand it was dealt, so nothing is passed on until everyone has chosen
+        for(int i = 0; i < seats.length; i++) {
+            seats[i].hand.removeAll(allWarheads[i]);
+            seats[(i + passOffset) % seats.length].hand.addAll(allWarheads[i]);
+        }
+    }
+
+    // Returns the seat that won the trick, which leads the next one
+    private int playTrick(int leader) {
+        tricksPlayed++;
+        playsInTrick.clear();
+        basePlay = null;
+        leadingPlay = null;
+        leadingSeat = leader;
+
+        int trickPoints = 0;
+        for(int i = 0; i < seats.length; i++) {
+            int seatIdx = (leader + i) % seats.length;
+            Seat seat = seats[seatIdx];
+
+            HeartsCard play;
+            if(tricksPlayed == 1 && i == 0) {
+                // The two of clubs is played for whoever holds it, like on the server
+                play = HeartsCard.of(TWO_OF_CLUBS);
+                seat.hand.remove(play);
+            } else {
+                boolean firstTrick = tricksPlayed == 1;
+                CardList<HeartsCard> validPlays = HeartsRules
+                        .getValidPlays(seat.hand, basePlay, firstTrick, heartsBroke)
+                        .toCardList(HeartsCard::of);
+                play = seat.strategy.choosePlay(seat, validPlays);
+                if(play == null || !HeartsRules.isValidPlay(seat.hand, play, basePlay, firstTrick, heartsBroke)) {
+                    throw new IllegalStateException("Seat " + seatIdx + " chose invalid play " + play);
+                }
+                seat.hand.remove(play);
+            }
+
+            playsInTrick.add(play);
+            trickPoints += play.getPoints();
+            heartsBroke = HeartsRules.isHeartsBrokenAfter(play, basePlay, heartsBroke);
+            if(basePlay == null) {
+                basePlay = play;
+                leadingPlay = play;
+                leadingSeat = seatIdx;
+            } else if(HeartsRules.takesLead(play, leadingPlay)) {
+                leadingPlay = play;
+                leadingSeat = seatIdx;
+            }
+        }
+
+        seats[leadingSeat].pointsTaken += trickPoints;
+        return leadingSeat;
+    }
+
+    private boolean anySeatHasPoints() {
+        for(Seat seat : seats) {
+            if(HeartsRules.containsPoints(seat.hand)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Seat implements SeatView {
+        private final Strategy strategy;
+        private final CardSet hand = new CardSet();
+        private int pointsTaken = 0;
+
+        Seat(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        @Override
+        public CardList<HeartsCard> getHand() {
+            return hand.toCardList(HeartsCard::of);
+        }
+
+        @Override
+        public CardList<HeartsCard> getPlaysInTrick() {
+            return playsInTrick;
+        }
+
+        @Override
+        public HeartsCard getBasePlay() {
+            return basePlay;
+        }
+
+        @Override
+        public HeartsCard getLeadingPlay() {
+            return leadingPlay;
+        }
+
+        @Override
+        public boolean isFirstTrick() {
+            return tricksPlayed == 1;
+        }
+
+        @Override
+        public boolean isHeartsBroken() {
+            return heartsBroke;
+        }
+    }
+}
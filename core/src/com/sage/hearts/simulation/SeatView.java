@@ -0,0 +1,24 @@
+package com.sage.hearts.simulation;
+
+import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.hearts.HeartsCard;
+
+// What a single seat can see of the round it's playing. Lists returned here belong to the game and must not be
+// modified.
+public interface SeatView {
+    // A copy of the seat's hand, in ascending card num order
+    CardList<HeartsCard> getHand();
+
+    // The cards played so far in the current trick, in the order they were played. Empty if this seat leads.
+    CardList<HeartsCard> getPlaysInTrick();
+
+    // The first card played in the current trick, or null if this seat leads
+    HeartsCard getBasePlay();
+
+    // The card currently winning the trick, or null if this seat leads
+    HeartsCard getLeadingPlay();
+
+    boolean isFirstTrick();
+
+    boolean isHeartsBroken();
+}
@@ -0,0 +1,14 @@
+package com.sage.hearts.simulation;
+
+import com.sage.hearts.utils.card.CardList;
+import com.sage.hearts.utils.hearts.HeartsCard;
+
+// Decides what a seat does. Strategies must not block. BotPlayer calls them on a thread of its own, with a copy of
+// the seat, and gives up on them once they go over BotPlayer.DECISION_BUDGET_NANOS.
+public interface Strategy {
+    // Must return HeartsRules.NUM_WARHEADS different cards from view.getHand()
+    CardList<HeartsCard> chooseWarheads(SeatView view);
+
+    // validPlays is never empty, and the returned card must be one of them
+    HeartsCard choosePlay(SeatView view, CardList<HeartsCard> validPlays);
+}
@@ -8,6 +8,28 @@ import java.util.Random;
 public class Card implements Comparable<Card> {
     private static Random r = new Random();
 
+    // Indexed by card num. Worked out once so decoding a card num never goes through Rank.values() or Suit.values(),
+    // which copy their arrays on every call.
+    private static final Rank[] RANKS = new Rank[54];
+    private static final Suit[] SUITS = new Suit[54];
+    private static final int[] RANK_NUMS = new int[54];
+    private static final int[] SUIT_NUMS = new int[54];
+    static {
+        Rank[] ranks = Rank.values();
+        Suit[] suits = Suit.values();
+        for(int cardNum = 0; cardNum < 52; cardNum++) {
+            RANKS[cardNum] = ranks[cardNum / 4];
+            SUITS[cardNum] = suits[cardNum % 4];
+        }
+        RANKS[52] = Rank.SMALL_JOKER;
+        RANKS[53] = Rank.BIG_JOKER;
+        SUITS[52] = SUITS[53] = Suit.JOKER;
+        for(int cardNum = 0; cardNum < 54; cardNum++) {
+            RANK_NUMS[cardNum] = RANKS[cardNum].rankNum;
+            SUIT_NUMS[cardNum] = SUITS[cardNum].suitNum;
+        }
+    }
+
     private Rank rank;
     private Suit suit;
     private int cardNum;
@@ -43,9 +65,7 @@ public class Card implements Comparable<Card> {
 
     public static Rank getRankFromCardNum(int cardNum) throws InvalidCardException {
         if(isValidCardNum(cardNum)) {
-            return cardNum == 53 ? Rank.BIG_JOKER
-                    : cardNum == 52 ? Rank.SMALL_JOKER
-                    : Rank.values()[cardNum / 4];
+            return RANKS[cardNum];
         } else {
             throw new InvalidCardException();
         }
@@ -53,7 +73,25 @@ public class Card implements Comparable<Card> {
 
     public static Suit getSuitFromCardNum(int cardNum) throws InvalidCardException {
         if(isValidCardNum(cardNum)) {
-            return cardNum >= 52 ? Suit.JOKER : Suit.values()[cardNum % 4];
+            return SUITS[cardNum];
+        } else {
+            throw new InvalidCardException();
+        }
+    }
+
+    // Same as getRankFromCardNum(cardNum).rankNum
+    public static int getRankNumFromCardNum(int cardNum) throws InvalidCardException {
+        if(isValidCardNum(cardNum)) {
+            return RANK_NUMS[cardNum];
+        } else {
+            throw new InvalidCardException();
+        }
+    }
+
+    // Same as getSuitFromCardNum(cardNum).suitNum
+    public static int getSuitNumFromCardNum(int cardNum) throws InvalidCardException {
+        if(isValidCardNum(cardNum)) {
+            return SUIT_NUMS[cardNum];
         } else {
             throw new InvalidCardException();
         }
@@ -79,7 +117,7 @@ public class Card implements Comparable<Card> {
         return cardNum;
     }
 
-    public final void setCardNum(int cardNum) throws InvalidCardException {
+    public void setCardNum(int cardNum) throws InvalidCardException {
         if(isValidCardNum(cardNum)) {
             this.cardNum = cardNum;
             suit = Suit.fromCardNum(cardNum);
@@ -0,0 +1,161 @@
+package com.sage.hearts.utils.card;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.IntFunction;
+
+// A set of cards packed into a single long: bit n is set when the card with card num n is in the set. Every card num,
+// jokers included, fits in 64 bits, so membership, suit checks and counting are all single bit operations. Sets only
+// hold card nums, so unlike CardList they have no order and can't hold the same card twice.
+public class CardSet {
+    private static final long[] SUIT_MASKS = new long[Suit.values().length];
+    static {
+        for(int cardNum = 0; cardNum < 52; cardNum++) {
+            SUIT_MASKS[cardNum % 4] |= 1L << cardNum;
+        }
+        SUIT_MASKS[Suit.JOKER.suitNum] = (1L << 52) | (1L << 53);
+    }
+
+    private long bits;
+
+    public CardSet() {
+        this(0L);
+    }
+
+    public CardSet(long bits) {
+        this.bits = bits;
+    }
+
+    public CardSet(CardSet other) {
+        this(other.bits);
+    }
+
+    public CardSet(Collection<? extends Card> cards) {
+        this(0L);
+        for(Card c : cards) {
+            add(c);
+        }
+    }
+
+    public static long bit(int cardNum) throws InvalidCardException {
+        if(!Card.isValidCardNum(cardNum)) {
+            throw new InvalidCardException();
+        }
+        return 1L << cardNum;
+    }
+
+    // Every card of the given suit
+    public static long suitMask(Suit suit) {
+        return SUIT_MASKS[suit.suitNum];
+    }
+
+    public static long suitMask(int suitNum) {
+        return SUIT_MASKS[suitNum];
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    // Returns whether the card was not already in the set
+    public boolean add(int cardNum) throws InvalidCardException {
+        long old = bits;
+        bits |= bit(cardNum);
+        return bits != old;
+    }
+
+    public boolean add(Card card) {
+        return add(card.getCardNum());
+    }
+
+    public void addAll(CardSet other) {
+        bits |= other.bits;
+    }
+
+    // Returns whether the card was in the set
+    public boolean remove(int cardNum) throws InvalidCardException {
+        long old = bits;
+        bits &= ~bit(cardNum);
+        return bits != old;
+    }
+
+    public boolean remove(Card card) {
+        return remove(card.getCardNum());
+    }
+
+    public boolean remove(Rank rank, Suit suit) throws InvalidCardException {
+        return remove(Card.getCardNumFromRankAndSuit(rank, suit));
+    }
+
+    // Returns whether any card was removed
+    public boolean removeAll(CardSet other) {
+        long old = bits;
+        bits &= ~other.bits;
+        return bits != old;
+    }
+
+    public boolean contains(int cardNum) {
+        return Card.isValidCardNum(cardNum) && (bits & (1L << cardNum)) != 0;
+    }
+
+    public boolean contains(Card card) {
+        return contains(card.getCardNum());
+    }
+
+    public boolean contains(Rank rank, Suit suit) throws InvalidCardException {
+        return contains(Card.getCardNumFromRankAndSuit(rank, suit));
+    }
+
+    public boolean containsAll(CardSet other) {
+        return (other.bits & ~bits) == 0;
+    }
+
+    public boolean containsAnySuit(Suit suit) {
+        return (bits & suitMask(suit)) != 0;
+    }
+
+    public int size() {
+        return Long.bitCount(bits);
+    }
+
+    public boolean isEmpty() {
+        return bits == 0;
+    }
+
+    public void clear() {
+        bits = 0;
+    }
+
+    // Card nums in ascending order
+    public ArrayList<Integer> toCardNumList() {
+        ArrayList<Integer> cardNums = new ArrayList<>(size());
+        for(long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            cardNums.add(Long.numberOfTrailingZeros(remaining));
+        }
+        return cardNums;
+    }
+
+    // Cards in ascending card num order, made by supplier from their card nums
+    public <T extends Card> CardList<T> toCardList(IntFunction<T> supplier) {
+        CardList<T> cards = new CardList<>();
+        for(long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+            cards.add(supplier.apply(Long.numberOfTrailingZeros(remaining)));
+        }
+        return cards;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CardSet && ((CardSet)o).bits == bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString() {
+        return toCardNumList().toString();
+    }
+}
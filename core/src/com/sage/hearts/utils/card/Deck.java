@@ -0,0 +1,55 @@
+package com.sage.hearts.utils.card;
+
+import java.util.SplittableRandom;
+
+// A deck of card nums that is shuffled in place and dealt straight into CardSets, so dealing allocates nothing. All of
+// its randomness comes from its own SplittableRandom: two decks made with the same seed deal the same hands, in the
+// same order, every time.
+public class Deck {
+    private final int[] cardNums;
+    private final SplittableRandom random;
+
+    public Deck(boolean jokers) {
+        this(jokers, new SplittableRandom());
+    }
+
+    public Deck(boolean jokers, long seed) {
+        this(jokers, new SplittableRandom(seed));
+    }
+
+    public Deck(boolean jokers, SplittableRandom random) {
+        this.cardNums = new int[jokers ? 54 : 52];
+        for(int i = 0; i < cardNums.length; i++) {
+            cardNums[i] = i;
+        }
+        this.random = random;
+    }
+
+    // Each shuffle starts from the order the last one left, so a deal depends only on the seed and the number of
+    // shuffles before it
+    public void shuffle() {
+        for(int i = cardNums.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = cardNums[i];
+            cardNums[i] = cardNums[j];
+            cardNums[j] = temp;
+        }
+    }
+
+    // Deals every card round robin, starting with hands[0]. The deck keeps its cards, so it can be shuffled and dealt
+    // again for the next round.
+    public void deal(CardSet... hands) {
+        for(int i = 0; i < cardNums.length; i++) {
+            hands[i % hands.length].add(cardNums[i]);
+        }
+    }
+
+    public int size() {
+        return cardNums.length;
+    }
+
+    // The card num at position i from the top of the deck
+    public int get(int i) {
+        return cardNums[i];
+    }
+}
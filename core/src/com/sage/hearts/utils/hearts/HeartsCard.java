@@ -6,6 +6,29 @@ import com.sage.hearts.utils.card.Rank;
 import com.sage.hearts.utils.card.Suit;
 
 public class HeartsCard extends Card {
+    // Indexed by card num. These have to be filled in before any card is made, interned ones included.
+    private static final int[] POINTS = new int[54];
+    private static final int[] SORT_KEYS = new int[54];
+    static {
+        for(int cardNum = 0; cardNum < 54; cardNum++) {
+            Suit suit = getSuitFromCardNum(cardNum);
+            Rank rank = getRankFromCardNum(cardNum);
+            POINTS[cardNum] = (suit == Suit.HEARTS) ? 1
+                    : (suit == Suit.SPADES && rank == Rank.QUEEN) ? 13
+                    : 0;
+            // Suit first, then rank. Rank nums are all below 32.
+            SORT_KEYS[cardNum] = suit.suitNum * 32 + rank.rankNum;
+        }
+    }
+
+    // One shared card per card num, jokers included. See of(int).
+    private static final HeartsCard[] INTERNED = new HeartsCard[54];
+    static {
+        for(int cardNum = 0; cardNum < INTERNED.length; cardNum++) {
+            INTERNED[cardNum] = new InternedHeartsCard(cardNum);
+        }
+    }
+
     private int points;
 
     public HeartsCard(Rank rank, Suit suit) throws InvalidCardException {
@@ -28,14 +51,43 @@ public class HeartsCard extends Card {
         points = determinePointValue();
     }
 
+    // Returns the shared, unchangeable card for cardNum, so nothing is allocated and two cards from here are equal
+    // exactly when they're the same object. Anything that needs to change its cards, like the renderable cards on the
+    // client, must make its own.
+    public static HeartsCard of(int cardNum) throws InvalidCardException {
+        if(!isValidCardNum(cardNum)) {
+            throw new InvalidCardException();
+        }
+        return INTERNED[cardNum];
+    }
+
+    public static HeartsCard of(Rank rank, Suit suit) throws InvalidCardException {
+        return of(getCardNumFromRankAndSuit(rank, suit));
+    }
+
     public int getPoints() {
         return points;
     }
 
+    public static int getPointsFromCardNum(int cardNum) throws InvalidCardException {
+        if(isValidCardNum(cardNum)) {
+            return POINTS[cardNum];
+        } else {
+            throw new InvalidCardException();
+        }
+    }
+
+    // Card nums ordered by their sort keys are in the same order as compareTo puts their cards in
+    public static int getSortKeyFromCardNum(int cardNum) throws InvalidCardException {
+        if(isValidCardNum(cardNum)) {
+            return SORT_KEYS[cardNum];
+        } else {
+            throw new InvalidCardException();
+        }
+    }
+
     private int determinePointValue() {
-        return (getSuit() == Suit.HEARTS) ? 1
-                : (getSuit() == Suit.SPADES && getRank() == Rank.QUEEN) ? 13
-                : 0;
+        return POINTS[getCardNum()];
     }
 
     @Override
@@ -45,10 +97,24 @@ public class HeartsCard extends Card {
 
     @Override
     public int compareTo(Card o) {
-        if(this.getSuit() == o.getSuit()) {
-            return Integer.compare(this.getRank().rankNum, o.getRank().rankNum);
-        } else {
-            return Integer.compare(this.getSuit().suitNum, o.getSuit().suitNum);
+        return Integer.compare(SORT_KEYS[this.getCardNum()], SORT_KEYS[o.getCardNum()]);
+    }
+
+    private static class InternedHeartsCard extends HeartsCard {
+        // Still false while Card's constructor sets the card num for the first time
+        private final boolean initialized;
+
+        private InternedHeartsCard(int cardNum) {
+            super(cardNum);
+            initialized = true;
+        }
+
+        @Override
+        public void setCardNum(int cardNum) {
+            if(initialized) {
+                throw new UnsupportedOperationException("Interned cards can't be changed");
+            }
+            super.setCardNum(cardNum);
         }
     }
 }
@@ -0,0 +1,176 @@
+package com.sage.hearts.utils.hearts;
+
+import com.sage.hearts.utils.card.Card;
+import com.sage.hearts.utils.card.CardSet;
+import com.sage.hearts.utils.card.Rank;
+import com.sage.hearts.utils.card.Suit;
+
+// The rules of the game, without any notion of players, connections or turns. Both the server and the simulator play
+// by these, so they can't drift apart.
+public final class HeartsRules {
+    public static final int NUM_PLAYERS = 4;
+    public static final int NUM_WARHEADS = 3;
+    public static final int SHOOT_THE_MOON_POINTS = 26;
+
+    private static final long HEARTS = CardSet.suitMask(Suit.HEARTS);
+    private static final long QUEEN_OF_SPADES = CardSet.bit(Card.getCardNumFromRankAndSuit(Rank.QUEEN, Suit.SPADES));
+    // Every card worth points
+    public static final long POINT_CARDS = HEARTS | QUEEN_OF_SPADES;
+
+    private HeartsRules() {
+    }
+
+    private static final int VALID = 0;
+    private static final int NOT_IN_HAND = 1;
+    private static final int POINTS_ON_FIRST_TRICK = 2;
+    private static final int HEARTS_NOT_BROKEN = 3;
+    private static final int MUST_FOLLOW_SUIT = 4;
+
+    private static final PlayValidityResult VALID_RESULT = new PlayValidityResult(true, "");
+
+    // Stands in for basePlay in the card num methods when nobody has played in the trick yet
+    public static final int NO_PLAY = -1;
+
+    // basePlay is the first card played in the current trick, or null if play is the first. firstTrick is true during
+    // the first trick of the round.
+    public static PlayValidityResult checkPlay(CardSet hand, HeartsCard play, HeartsCard basePlay,
+                                               boolean firstTrick, boolean heartsBroke) {
+        if(play == null) {
+            return new PlayValidityResult(false, "Play was null (THIS IS BAD)");
+        } else if(hand == null) {
+            return new PlayValidityResult(false, "Player was null (THIS IS BAD)");
+        }
+
+        switch(getViolation(hand.getBits(), play.getCardNum(), cardNumOf(basePlay), firstTrick, heartsBroke)) {
+        case NOT_IN_HAND:
+            return new PlayValidityResult(false, "Hand did not contain card (THIS IS BAD)");
+        case POINTS_ON_FIRST_TRICK:
+            return new PlayValidityResult(false, "You cannot play points on the first round");
+        case HEARTS_NOT_BROKEN:
+            return new PlayValidityResult(false, "Hearts has not been broken yet");
+        case MUST_FOLLOW_SUIT:
+            return new PlayValidityResult(false, "You still have " + basePlay.getSuit().toString() + " in your hand");
+        default:
+            return VALID_RESULT;
+        }
+    }
+
+    // Same as checkPlay(...).isValid, but doesn't allocate
+    public static boolean isValidPlay(CardSet hand, HeartsCard play, HeartsCard basePlay,
+                                      boolean firstTrick, boolean heartsBroke) {
+        return isValidPlay(hand.getBits(), play.getCardNum(), cardNumOf(basePlay), firstTrick, heartsBroke);
+    }
+
+    // Card num version of isValidPlay. hand holds CardSet bits and basePlay is NO_PLAY if play is the first.
+    public static boolean isValidPlay(long hand, int play, int basePlay, boolean firstTrick, boolean heartsBroke) {
+        return getViolation(hand, play, basePlay, firstTrick, heartsBroke) == VALID;
+    }
+
+    private static int getViolation(long hand, int play, int basePlay, boolean firstTrick, boolean heartsBroke) {
+        long playBit = CardSet.bit(play);
+
+        if((hand & playBit) == 0) {
+            return NOT_IN_HAND;
+        } else if(firstTrick && (playBit & POINT_CARDS) != 0 && (hand & ~POINT_CARDS) != 0) {
+            return POINTS_ON_FIRST_TRICK;
+        } else if(basePlay == NO_PLAY) {
+            return ((playBit & HEARTS) == 0 || (hand & ~HEARTS) == 0 || heartsBroke) ? VALID : HEARTS_NOT_BROKEN;
+        } else if(Card.getSuitNumFromCardNum(play) != Card.getSuitNumFromCardNum(basePlay)) {
+            return ((hand & CardSet.suitMask(Card.getSuitNumFromCardNum(basePlay))) != 0) ? MUST_FOLLOW_SUIT : VALID;
+        } else {
+            return VALID;
+        }
+    }
+
+    // Every card in hand that could be played right now. Works out the same plays as calling isValidPlay on each
+    // card, but all at once.
+    public static CardSet getValidPlays(CardSet hand, HeartsCard basePlay, boolean firstTrick, boolean heartsBroke) {
+        return new CardSet(getValidPlays(hand.getBits(), cardNumOf(basePlay), firstTrick, heartsBroke));
+    }
+
+    // Card num version of getValidPlays, returning CardSet bits
+    public static long getValidPlays(long hand, int basePlay, boolean firstTrick, boolean heartsBroke) {
+        long plays = hand;
+        if(basePlay != NO_PLAY) {
+            long baseSuit = CardSet.suitMask(Card.getSuitNumFromCardNum(basePlay));
+            if((hand & baseSuit) != 0) {
+                plays = hand & baseSuit;
+            }
+        } else if(!heartsBroke && (hand & ~HEARTS) != 0) {
+            plays = hand & ~HEARTS;
+        }
+        if(firstTrick && (hand & ~POINT_CARDS) != 0) {
+            plays &= ~POINT_CARDS;
+        }
+        return plays;
+    }
+
+    // Whether hearts is broken after play, given whether it was broken before. Like the server always has, only a
+    // card that doesn't follow suit counts: a heart breaks hearts and any other suit leaves it unbroken again.
+    public static boolean isHeartsBrokenAfter(HeartsCard play, HeartsCard basePlay, boolean heartsBroke) {
+        return isHeartsBrokenAfter(play.getCardNum(), cardNumOf(basePlay), heartsBroke);
+    }
+
+    public static boolean isHeartsBrokenAfter(int play, int basePlay, boolean heartsBroke) {
+        if(basePlay == NO_PLAY || Card.getSuitNumFromCardNum(play) == Card.getSuitNumFromCardNum(basePlay)) {
+            return heartsBroke;
+        }
+        return (CardSet.bit(play) & HEARTS) != 0;
+    }
+
+    // True if play takes the trick from leadingPlay, which is the best card played in the trick so far
+    public static boolean takesLead(HeartsCard play, HeartsCard leadingPlay) {
+        return takesLead(play.getCardNum(), leadingPlay.getCardNum());
+    }
+
+    public static boolean takesLead(int play, int leadingPlay) {
+        return Card.getSuitNumFromCardNum(play) == Card.getSuitNumFromCardNum(leadingPlay)
+                && Card.getRankNumFromCardNum(play) > Card.getRankNumFromCardNum(leadingPlay);
+    }
+
+    private static int cardNumOf(HeartsCard card) {
+        return (card == null) ? NO_PLAY : card.getCardNum();
+    }
+
+    public static boolean isTwoOfClubs(HeartsCard card) {
+        return card.getRank() == Rank.TWO && card.getSuit() == Suit.CLUBS;
+    }
+
+    // Once no hand contains points there's nothing left to play for, so the round ends early
+    public static boolean containsPoints(CardSet cards) {
+        return (cards.getBits() & POINT_CARDS) != 0;
+    }
+
+    // Each heart is worth 1 point and the queen of spades is worth 13, like HeartsCard.getPoints()
+    public static int sumPoints(CardSet cards) {
+        return Long.bitCount(cards.getBits() & HEARTS) + (((cards.getBits() & QUEEN_OF_SPADES) != 0) ? 13 : 0);
+    }
+
+    // Returns the index of the player who took every point this round, or -1 if nobody shot the moon. pointsTaken
+    // holds the points each player collected in tricks.
+    public static int getShotTheMoon(int[] pointsTaken) {
+        int shotTheMoon = -1;
+        for(int i = 0; i < pointsTaken.length; i++) {
+            if(pointsTaken[i] > 0) {
+                if(shotTheMoon != -1) {
+                    return -1;
+                }
+                shotTheMoon = i;
+            }
+        }
+        return shotTheMoon;
+    }
+
+    // Points each player gains at the end of a round. If a player shoots the moon, every other player gains
+    // SHOOT_THE_MOON_POINTS and they gain nothing.
+    public static int[] getGainedPoints(int[] pointsTaken) {
+        int shotTheMoon = getShotTheMoon(pointsTaken);
+        int[] gainedPoints = new int[pointsTaken.length];
+        for(int i = 0; i < pointsTaken.length; i++) {
+            gainedPoints[i] = (shotTheMoon == -1) ? pointsTaken[i]
+                    : (i == shotTheMoon) ? 0
+                    : SHOOT_THE_MOON_POINTS;
+        }
+        return gainedPoints;
+    }
+}
@@ -0,0 +1,11 @@
+package com.sage.hearts.utils.hearts;
+
+public class PlayValidityResult {
+    public final boolean isValid;
+    public final String message;
+
+    public PlayValidityResult(boolean isValid, String message) {
+        this.isValid = isValid;
+        this.message = message;
+    }
+}
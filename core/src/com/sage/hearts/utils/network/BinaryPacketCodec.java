@@ -0,0 +1,292 @@
+package com.sage.hearts.utils.network;
+
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Encodes packets using the fields their NetworkCode declares. A frame is laid out as:
+//   marker byte, code ordinal byte, one byte with a bit set for each field present, then each present field in order.
+// Ints are zigzag varints, card nums are single bytes, card sets are 56 bit masks (7 bytes), and strings, arrays and
+// maps are prefixed by a varint length.
+public class BinaryPacketCodec<T extends Enum<T> & NetworkCode, P extends Packet<T>> implements PacketCodec<P> {
+    // First byte of every binary frame. Java serialization streams always start with 0xAC, so the two can't be mixed up
+    public static final byte FRAME_MARKER = (byte)0xB1;
+
+    private static final int NULL_CODE = 0xFF;
+    private static final int MAX_FIELDS = 8;
+    private static final int CARD_SET_BYTES = 7;
+
+    private final T[] codes;
+    private final Supplier<P> packetFactory;
+
+    public BinaryPacketCodec(Class<T> codeClass, Supplier<P> packetFactory) {
+        this.codes = codeClass.getEnumConstants();
+        this.packetFactory = packetFactory;
+
+        if(codes.length >= NULL_CODE) {
+            throw new IllegalArgumentException(codeClass.getSimpleName() + " has too many codes");
+        }
+        for(T code : codes) {
+            if(code.getFields().length > MAX_FIELDS) {
+                throw new IllegalArgumentException(code + " has more than " + MAX_FIELDS + " fields");
+            }
+        }
+    }
+
+    @Override
+    public byte[] encode(P packet) throws SerializationException {
+        FrameWriter writer = new FrameWriter();
+        writer.writeByte(FRAME_MARKER);
+
+        PacketField[] fields = (packet.networkCode == null) ? new PacketField[0] : packet.networkCode.getFields();
+        writer.writeByte((packet.networkCode == null) ? NULL_CODE : packet.networkCode.ordinal());
+
+        int presentFields = 0;
+        int numPresentFields = 0;
+        for(int i = 0; i < fields.length; i++) {
+            if(packet.data.get(fields[i].key) != null) {
+                presentFields |= 1 << i;
+                numPresentFields++;
+            }
+        }
+        if(numPresentFields != packet.data.values().stream().filter(Objects::nonNull).count()) {
+            throw new SerializationException("Packet with code " + packet.networkCode
+                    + " has data that is not declared by its code: " + packet.data.keySet());
+        }
+        writer.writeByte(presentFields);
+
+        for(int i = 0; i < fields.length; i++) {
+            if((presentFields & (1 << i)) != 0) {
+                try {
+                    writeValue(writer, fields[i].type, packet.data.get(fields[i].key));
+                } catch(ClassCastException | NullPointerException e) {
+                    throw new SerializationException("Field \"" + fields[i].key + "\" of " + packet.networkCode
+                            + " is not of type " + fields[i].type);
+                }
+            }
+        }
+
+        return writer.toByteArray();
+    }
+
+    @Override
+    public P decode(byte[] bytes) throws SerializationException {
+        ByteBuffer reader = ByteBuffer.wrap(bytes);
+        try {
+            if(reader.get() != FRAME_MARKER) {
+                throw new SerializationException("Not a binary packet frame");
+            }
+
+            P packet = packetFactory.get();
+            int codeOrdinal = Byte.toUnsignedInt(reader.get());
+            PacketField[] fields;
+            if(codeOrdinal == NULL_CODE) {
+                fields = new PacketField[0];
+            } else if(codeOrdinal < codes.length) {
+                packet.networkCode = codes[codeOrdinal];
+                fields = packet.networkCode.getFields();
+            } else {
+                throw new SerializationException("Unknown code ordinal " + codeOrdinal);
+            }
+
+            int presentFields = Byte.toUnsignedInt(reader.get());
+            if((presentFields >>> fields.length) != 0) {
+                throw new SerializationException("Frame has fields that " + packet.networkCode + " does not declare");
+            }
+            for(int i = 0; i < fields.length; i++) {
+                if((presentFields & (1 << i)) != 0) {
+                    packet.data.put(fields[i].key, readValue(reader, fields[i].type));
+                }
+            }
+
+            if(reader.hasRemaining()) {
+                throw new SerializationException("Frame has " + reader.remaining() + " unread bytes");
+            }
+            return packet;
+        } catch(BufferUnderflowException e) {
+            throw new SerializationException("Frame ended early");
+        }
+    }
+
+    private static void writeValue(FrameWriter writer, PacketField.Type type, Object value)
+            throws SerializationException, ClassCastException, NullPointerException {
+        switch(type) {
+            case INT:
+                writer.writeVarInt(zigzag((Integer)value));
+                break;
+            case BOOLEAN:
+                writer.writeByte((Boolean)value ? 1 : 0);
+                break;
+            case STRING:
+                writer.writeString((String)value);
+                break;
+            case CARD:
+                int cardNum = (Integer)value;
+                if(cardNum < 0 || cardNum > 0xFF) {
+                    throw new SerializationException("Card num " + cardNum + " does not fit in a byte");
+                }
+                writer.writeByte(cardNum);
+                break;
+            case CARD_SET:
+                long mask = 0;
+                for(Object card : (Collection<?>)value) {
+                    int num = (Integer)card;
+                    if(num < 0 || num >= CARD_SET_BYTES * Byte.SIZE || (mask & (1L << num)) != 0) {
+                        throw new SerializationException("Card num " + num + " can't be put in a card set");
+                    }
+                    mask |= 1L << num;
+                }
+                for(int i = 0; i < CARD_SET_BYTES; i++) {
+                    writer.writeByte((int)(mask >>> (i * Byte.SIZE)));
+                }
+                break;
+            case INT_ARRAY:
+                int[] array = (int[])value;
+                writer.writeVarInt(array.length);
+                for(int i : array) {
+                    writer.writeVarInt(zigzag(i));
+                }
+                break;
+            case INT_MAP:
+                Map<?, ?> intMap = (Map<?, ?>)value;
+                writer.writeVarInt(intMap.size());
+                for(Map.Entry<?, ?> entry : intMap.entrySet()) {
+                    writer.writeVarInt(zigzag((Integer)entry.getKey()));
+                    writer.writeVarInt(zigzag((Integer)entry.getValue()));
+                }
+                break;
+            case STRING_MAP:
+                Map<?, ?> stringMap = (Map<?, ?>)value;
+                writer.writeVarInt(stringMap.size());
+                for(Map.Entry<?, ?> entry : stringMap.entrySet()) {
+                    writer.writeVarInt(zigzag((Integer)entry.getKey()));
+                    writer.writeString((String)entry.getValue());
+                }
+                break;
+        }
+    }
+
+    private static Serializable readValue(ByteBuffer reader, PacketField.Type type)
+            throws SerializationException {
+        switch(type) {
+            case INT:
+                return unzigzag(readVarInt(reader));
+            case BOOLEAN:
+                return reader.get() != 0;
+            case STRING:
+                return readString(reader);
+            case CARD:
+                return Byte.toUnsignedInt(reader.get());
+            case CARD_SET:
+                long mask = 0;
+                for(int i = 0; i < CARD_SET_BYTES; i++) {
+                    mask |= Byte.toUnsignedLong(reader.get()) << (i * Byte.SIZE);
+                }
+                ArrayList<Integer> cards = new ArrayList<>(Long.bitCount(mask));
+                while(mask != 0) {
+                    cards.add(Long.numberOfTrailingZeros(mask));
+                    mask &= mask - 1;
+                }
+                return cards;
+            case INT_ARRAY:
+                int[] array = new int[readLength(reader)];
+                for(int i = 0; i < array.length; i++) {
+                    array[i] = unzigzag(readVarInt(reader));
+                }
+                return array;
+            case INT_MAP:
+                int intMapSize = readLength(reader);
+                HashMap<Integer, Integer> intMap = new HashMap<>();
+                for(int i = 0; i < intMapSize; i++) {
+                    intMap.put(unzigzag(readVarInt(reader)), unzigzag(readVarInt(reader)));
+                }
+                return intMap;
+            case STRING_MAP:
+                int stringMapSize = readLength(reader);
+                HashMap<Integer, String> stringMap = new HashMap<>();
+                for(int i = 0; i < stringMapSize; i++) {
+                    stringMap.put(unzigzag(readVarInt(reader)), readString(reader));
+                }
+                return stringMap;
+            default:
+                throw new SerializationException("Unknown field type " + type);
+        }
+    }
+
+    private static int zigzag(int i) {
+        return (i << 1) ^ (i >> 31);
+    }
+
+    private static int unzigzag(int i) {
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    private static int readVarInt(ByteBuffer reader) throws SerializationException {
+        int value = 0;
+        for(int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = reader.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint");
+    }
+
+    // Every element takes at least one byte, so a length longer than what's left of the frame can't be valid
+    private static int readLength(ByteBuffer reader) throws SerializationException {
+        int length = readVarInt(reader);
+        if(length < 0 || length > reader.remaining()) {
+            throw new SerializationException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    private static String readString(ByteBuffer reader) throws SerializationException {
+        byte[] bytes = new byte[readLength(reader)];
+        reader.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class FrameWriter {
+        private byte[] bytes = new byte[32];
+        private int size = 0;
+
+        void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte)b;
+        }
+
+        void writeVarInt(int i) {
+            ensureCapacity(5);
+            while((i & ~0x7F) != 0) {
+                bytes[size++] = (byte)((i & 0x7F) | 0x80);
+                i >>>= 7;
+            }
+            bytes[size++] = (byte)i;
+        }
+
+        void writeString(String s) {
+            byte[] stringBytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(stringBytes.length);
+            ensureCapacity(stringBytes.length);
+            System.arraycopy(stringBytes, 0, bytes, size, stringBytes.length);
+            size += stringBytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if(size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -1,4 +1,6 @@
 package com.sage.hearts.utils.network;
 
 public interface NetworkCode {
+    // The fields a packet with this code may carry in its data map
+    PacketField[] getFields();
 }
@@ -8,6 +8,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 public abstract class Packet<T extends NetworkCode> implements Serializable {
+    private static final long serialVersionUID = 8418055552285370341L; // Must never change, see ServerPacket
+
     public T networkCode;
     public final Map<Serializable, Serializable> data = new HashMap<>();
 
@@ -0,0 +1,10 @@
+package com.sage.hearts.utils.network;
+
+import com.badlogic.gdx.utils.SerializationException;
+
+// Turns packets into the bytes of a single frame and back
+public interface PacketCodec<P extends Packet<?>> {
+    byte[] encode(P packet) throws SerializationException;
+
+    P decode(byte[] bytes) throws SerializationException;
+}
@@ -0,0 +1,63 @@
+package com.sage.hearts.utils.network;
+
+// One entry of a packet's data map, as described by the packet's NetworkCode
+public class PacketField {
+    public final String key;
+    public final Type type;
+
+    private PacketField(String key, Type type) {
+        this.key = key;
+        this.type = type;
+    }
+
+    // Integer
+    public static PacketField intField(String key) {
+        return new PacketField(key, Type.INT);
+    }
+
+    // Boolean
+    public static PacketField booleanField(String key) {
+        return new PacketField(key, Type.BOOLEAN);
+    }
+
+    // String
+    public static PacketField stringField(String key) {
+        return new PacketField(key, Type.STRING);
+    }
+
+    // Integer card num
+    public static PacketField cardField(String key) {
+        return new PacketField(key, Type.CARD);
+    }
+
+    // List<Integer> of distinct card nums. The order of the cards is not kept: they always decode in card num order.
+    public static PacketField cardSetField(String key) {
+        return new PacketField(key, Type.CARD_SET);
+    }
+
+    // int[]
+    public static PacketField intArrayField(String key) {
+        return new PacketField(key, Type.INT_ARRAY);
+    }
+
+    // HashMap<Integer, Integer>
+    public static PacketField intMapField(String key) {
+        return new PacketField(key, Type.INT_MAP);
+    }
+
+    // HashMap<Integer, String>
+    public static PacketField stringMapField(String key) {
+        return new PacketField(key, Type.STRING_MAP);
+    }
+
+    public enum Type {
+        INT,
+        BOOLEAN,
+        STRING,
+        CARD,
+        CARD_SET,
+        INT_ARRAY,
+        INT_MAP,
+        STRING_MAP
+    }
+}
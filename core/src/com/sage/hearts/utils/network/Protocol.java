@@ -0,0 +1,44 @@
+package com.sage.hearts.utils.network;
+
+// Protocol versions a client and server can agree on. Both sides start out speaking LEGACY. The server advertises the
+// newest version it supports in CONNECTION_ACCEPTED, the client answers with a PROTOCOL packet asking for the newest
+// version both sides support, and the server confirms the version it picked with PROTOCOL_SELECTED. Old clients and
+// servers never take part in the handshake, so they keep using LEGACY.
+public final class Protocol {
+    // Packets are encoded with SerializationPacketCodec
+    public static final int LEGACY = 1;
+
+    // Packets are encoded with BinaryPacketCodec
+    public static final int BINARY = 2;
+
+    // Binary, and each play is announced with a single PLAY_RESOLVED instead of WAIT_FOR_NEW_PLAY,
+    // WAIT_FOR_LEADING_PLAYER, WAIT_FOR_TURN_PLAYER and SUCCESSFUL_PLAY
+    public static final int PLAY_RESOLVED = 3;
+
+    // PLAY_RESOLVED, and MAKE_PLAY carries the cards the player is allowed to play
+    public static final int VALID_PLAYS = 4;
+
+    // The first version whose servers always take ADD_BOT and REMOVE_BOT from the host. Bots came in just before
+    // VALID_PLAYS, so a server speaking PLAY_RESOLVED may not know them.
+    public static final int BOTS = VALID_PLAYS;
+
+    // VALID_PLAYS, and MAKE_PLAY and SEND_WARHEADS carry how long the player has to answer when the server has a
+    // deadline for it
+    public static final int TURN_TIMERS = 5;
+
+    // TURN_TIMERS, and players are told with PLAYER_AWAY and PLAYER_BACK when someone drops and resumes their seat
+    public static final int RESUME = 6;
+
+    // RESUME, and clients can ask for GAME_SNAPSHOT whenever they lose track of the round with REQUEST_SNAPSHOT
+    public static final int SNAPSHOTS = 7;
+
+    public static final int LATEST = SNAPSHOTS;
+
+    private Protocol() {
+    }
+
+    // Returns the version to use when the other side supports versions up to and including requested
+    public static int select(int requested) {
+        return Math.max(LEGACY, Math.min(requested, LATEST));
+    }
+}
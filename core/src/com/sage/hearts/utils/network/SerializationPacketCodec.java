@@ -0,0 +1,26 @@
+package com.sage.hearts.utils.network;
+
+import com.badlogic.gdx.utils.SerializationException;
+
+// The original encoding: the whole packet is run through Java serialization. Every version of the game understands it.
+public class SerializationPacketCodec<P extends Packet<?>> implements PacketCodec<P> {
+    private final Class<P> packetClass;
+
+    public SerializationPacketCodec(Class<P> packetClass) {
+        this.packetClass = packetClass;
+    }
+
+    @Override
+    public byte[] encode(P packet) throws SerializationException {
+        return packet.toBytes();
+    }
+
+    @Override
+    public P decode(byte[] bytes) throws SerializationException {
+        Packet<?> packet = Packet.fromBytes(bytes);
+        if(!packetClass.isInstance(packet)) {
+            throw new SerializationException("Expected a " + packetClass.getSimpleName());
+        }
+        return packetClass.cast(packet);
+    }
+}
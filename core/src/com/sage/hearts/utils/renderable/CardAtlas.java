@@ -0,0 +1,250 @@
+package com.sage.hearts.utils.renderable;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.utils.BufferUtils;
+
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Every card sprite is packed onto a few large shared pages instead of getting a texture of its own, so a SpriteBatch
+// can draw a whole table of cards without switching textures. Sprites that CardSpriteBaker baked when the game was
+// built are loaded from its pages instead of being rendered.
+//
+// Sprites rendered at runtime are reference counted: a card acquires the sprite it draws and releases it once it
+// draws something else or is disposed. Since every sprite is the same size, the pages are divided into slots, and once
+// MAX_RUNTIME_PAGES are full the least recently used sprite no card holds gives up its slot to the next one.
+class CardAtlas {
+    // Cards are never drawn anywhere near their full CARD_WIDTH_IN_PIXELS x CARD_HEIGHT_IN_PIXELS size, so they're
+    // packed smaller. At this scale one 4096x4096 page holds every face and back, along with a couple of variants.
+    static final float SCALE = 0.4f;
+    static final int SPRITE_WIDTH = (int)(RenderableCardEntity.CARD_WIDTH_IN_PIXELS * SCALE);
+    static final int SPRITE_HEIGHT = (int)(RenderableCardEntity.CARD_HEIGHT_IN_PIXELS * SCALE);
+
+    static final int MAX_PAGE_SIZE = 4096;
+    static final int PADDING = 2;
+
+    // Pages past this are only made while every slot holds a sprite some card is drawing
+    private static final int MAX_RUNTIME_PAGES = 1;
+
+    private final int pageSize;
+    private final int slotsAcross, slotsDown;
+    private final List<Texture> pages = new ArrayList<>();
+    private final Deque<Slot> freeSlots = new ArrayDeque<>();
+    // Iterates from the least to the most recently acquired sprite
+    private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final TextureAtlas bakedAtlas; // Null if there aren't any baked sprites this GPU can use
+    private final Map<String, TextureRegion> bakedRegions = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    CardAtlas() {
+        pageSize = getPageSize();
+        slotsAcross = pageSize / (SPRITE_WIDTH + PADDING);
+        slotsDown = pageSize / (SPRITE_HEIGHT + PADDING);
+        bakedAtlas = loadBakedAtlas(pageSize);
+    }
+
+    // Returns the named sprite, or null if it has to be packed. A sprite that's returned must be released once the
+    // caller stops drawing it.
+    TextureRegion acquire(String name) {
+        Slot slot = slots.get(name);
+        if(slot != null) {
+            hits++;
+            slot.references++;
+            return slot.region;
+        }
+
+        TextureRegion baked = findBakedRegion(name);
+        if(baked != null) {
+            hits++;
+            return baked;
+        }
+        misses++;
+        return null;
+    }
+
+    void release(String name) {
+        Slot slot = slots.get(name);
+        if(slot != null && slot.references > 0) {
+            slot.references--;
+        }
+    }
+
+    private TextureRegion findBakedRegion(String name) {
+        if(bakedAtlas == null) {
+            return null;
+        }
+        TextureRegion region = bakedRegions.get(name);
+        if(region == null) {
+            region = bakedAtlas.findRegion(name);
+            if(region != null) {
+                bakedRegions.put(name, region);
+            }
+        }
+        return region;
+    }
+
+    // The pixmap is scaled down to SPRITE_WIDTH x SPRITE_HEIGHT as it's packed, and can be disposed afterwards. The
+    // returned sprite has already been acquired.
+    TextureRegion pack(String name, Pixmap spritePixmap) {
+        Slot slot = takeSlot();
+        Pixmap scaledPixmap = scaleSprite(spritePixmap);
+        Pixmap paddedPixmap = padSprite(scaledPixmap);
+        scaledPixmap.dispose();
+
+        // Only the slot is uploaded, not the whole page
+        slot.page.draw(paddedPixmap, slot.region.getRegionX() - PADDING / 2, slot.region.getRegionY() - PADDING / 2);
+        paddedPixmap.dispose();
+
+        slot.references = 1;
+        slots.put(name, slot);
+        return slot.region;
+    }
+
+    private Slot takeSlot() {
+        if(freeSlots.isEmpty() && pages.size() >= MAX_RUNTIME_PAGES) {
+            Iterator<Slot> leastRecentlyUsed = slots.values().iterator();
+            while(leastRecentlyUsed.hasNext()) {
+                Slot slot = leastRecentlyUsed.next();
+                if(slot.references == 0) {
+                    leastRecentlyUsed.remove();
+                    evictions++;
+                    return slot;
+                }
+            }
+        }
+        if(freeSlots.isEmpty()) {
+            addPage();
+        }
+        return freeSlots.pop();
+    }
+
+    private void addPage() {
+        if(pages.size() >= MAX_RUNTIME_PAGES) {
+            Gdx.app.log("CardAtlas", "Every card sprite is in use, adding page " + (pages.size() + 1));
+        }
+        Pixmap blank = new Pixmap(pageSize, pageSize, Pixmap.Format.RGBA8888);
+        Texture page = new Texture(new PixmapTextureData(blank, null, false, true, false));
+        page.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        pages.add(page);
+        for(int y = 0; y < slotsDown; y++) {
+            for(int x = 0; x < slotsAcross; x++) {
+                freeSlots.add(new Slot(page, new TextureRegion(page,
+                        x * (SPRITE_WIDTH + PADDING) + PADDING / 2, y * (SPRITE_HEIGHT + PADDING) + PADDING / 2,
+                        SPRITE_WIDTH, SPRITE_HEIGHT)));
+            }
+        }
+    }
+
+    // Baked sprites are packed the same way, so that they look exactly like the ones packed at runtime
+    static Pixmap scaleSprite(Pixmap spritePixmap) {
+        Pixmap scaledPixmap = new Pixmap(SPRITE_WIDTH, SPRITE_HEIGHT, Pixmap.Format.RGBA8888);
+        scaledPixmap.setBlending(Pixmap.Blending.None);
+        scaledPixmap.setFilter(Pixmap.Filter.BiLinear);
+        scaledPixmap.drawPixmap(spritePixmap,
+                0, 0, spritePixmap.getWidth(), spritePixmap.getHeight(),
+                0, 0, SPRITE_WIDTH, SPRITE_HEIGHT);
+        return scaledPixmap;
+    }
+
+    // Repeats the sprite's edges into the padding around it, so that filtering doesn't blend in the slot next to it
+    private static Pixmap padSprite(Pixmap scaledPixmap) {
+        int pad = PADDING / 2;
+        int width = scaledPixmap.getWidth();
+        int height = scaledPixmap.getHeight();
+        Pixmap paddedPixmap = new Pixmap(width + PADDING, height + PADDING, Pixmap.Format.RGBA8888);
+        paddedPixmap.setBlending(Pixmap.Blending.None);
+        paddedPixmap.drawPixmap(scaledPixmap, 0, 0, width, 1, pad, 0, width, pad);
+        paddedPixmap.drawPixmap(scaledPixmap, 0, height - 1, width, 1, pad, height + pad, width, pad);
+        paddedPixmap.drawPixmap(scaledPixmap, 0, 0, 1, height, 0, pad, pad, height);
+        paddedPixmap.drawPixmap(scaledPixmap, width - 1, 0, 1, height, width + pad, pad, pad, height);
+        paddedPixmap.drawPixmap(scaledPixmap, pad, pad);
+        return paddedPixmap;
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    // Texture memory taken up by the atlas's pages, baked ones included
+    long getResidentBytes() {
+        long bytes = 4L * pageSize * pageSize * pages.size();
+        if(bakedAtlas != null) {
+            for(Texture page : bakedAtlas.getTextures()) {
+                bytes += 4L * page.getWidth() * page.getHeight();
+            }
+        }
+        return bytes;
+    }
+
+    // Disposes every page packed at runtime. Sprites made from those pages must not be drawn afterwards. Baked pages
+    // stay loaded, since loading them again would cost more than keeping them.
+    void clear() {
+        pages.forEach(Texture::dispose);
+        pages.clear();
+        freeSlots.clear();
+        slots.clear();
+    }
+
+    private static TextureAtlas loadBakedAtlas(int maxPageSize) {
+        FileHandle atlasFile = Gdx.files.internal(CardSpriteBaker.ATLAS_PATH);
+        if(!atlasFile.exists()) {
+            return null;
+        }
+
+        TextureAtlas.TextureAtlasData data = new TextureAtlas.TextureAtlasData(atlasFile, atlasFile.parent(), false);
+        for(TextureAtlas.TextureAtlasData.Page page : data.getPages()) {
+            if(page.width > maxPageSize || page.height > maxPageSize) {
+                Gdx.app.log("CardAtlas", "Baked card pages are too big for this GPU, so cards are rendered at runtime");
+                return null;
+            }
+        }
+        return new TextureAtlas(data);
+    }
+
+    private static int getPageSize() {
+        IntBuffer maxTextureSize = BufferUtils.newIntBuffer(16);
+        Gdx.gl.glGetIntegerv(GL20.GL_MAX_TEXTURE_SIZE, maxTextureSize);
+        return Math.min(MAX_PAGE_SIZE, maxTextureSize.get(0));
+    }
+
+    private static class Slot {
+        final Texture page;
+        final TextureRegion region;
+        int references = 0;
+
+        Slot(Texture page, TextureRegion region) {
+            this.page = page;
+            this.region = region;
+        }
+    }
+}
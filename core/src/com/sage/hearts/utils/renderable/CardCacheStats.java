@@ -0,0 +1,41 @@
+package com.sage.hearts.utils.renderable;
+
+// A snapshot of how well the card sprite and design caches are doing. Sprite counts cover cards drawn from the atlas;
+// cards drawn by the card shader only make it decode designs.
+public class CardCacheStats {
+    public final long spriteHits;
+    public final long spriteMisses;
+    public final long spriteEvictions;
+    public final long designHits;
+    public final long designMisses;
+    public final long designEvictions;
+
+    // Texture memory: the atlas's pages and the card shader's design sheet
+    public final long residentTextureBytes;
+    // Native memory held by decoded design pixmaps
+    public final long residentDesignBytes;
+
+    CardCacheStats(long spriteHits, long spriteMisses, long spriteEvictions,
+                   long designHits, long designMisses, long designEvictions,
+                   long residentTextureBytes, long residentDesignBytes) {
+        this.spriteHits = spriteHits;
+        this.spriteMisses = spriteMisses;
+        this.spriteEvictions = spriteEvictions;
+        this.designHits = designHits;
+        this.designMisses = designMisses;
+        this.designEvictions = designEvictions;
+        this.residentTextureBytes = residentTextureBytes;
+        this.residentDesignBytes = residentDesignBytes;
+    }
+
+    public long getResidentBytes() {
+        return residentTextureBytes + residentDesignBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "sprites: " + spriteHits + " hits, " + spriteMisses + " misses, " + spriteEvictions + " evicted; "
+                + "designs: " + designHits + " hits, " + designMisses + " misses, " + designEvictions + " evicted; "
+                + (getResidentBytes() / (1024 * 1024)) + " MB resident";
+    }
+}
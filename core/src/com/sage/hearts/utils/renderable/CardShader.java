@@ -0,0 +1,334 @@
+package com.sage.hearts.utils.renderable;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.NumberUtils;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Draws cards from a single sheet of bare card designs, leaving the background color, rounded corners and border to
+// shaders/card.frag. Each design is uploaded once, the first time it's drawn; selecting, highlighting or recoloring a
+// card only changes the vertices it's drawn with. The shader draws every other sprite the way SpriteBatch would, so
+// it stays set on the batch once a card has been drawn with it. Card vertices are marked with an odd alpha, which
+// Color.toFloatBits can't produce, so a sprite is only ever drawn as a card if it's drawn from raw vertices with an
+// odd alpha.
+//
+// Designs can also be preloaded: a background thread decodes and scales them into cells, and the render thread uploads
+// a few of those cells each frame.
+class CardShader {
+    // Must match card.frag
+    private static final float CARD_U_OFFSET = 16f;
+    private static final float BACK_V_OFFSET = 2f;
+    private static final int MAX_BORDER_COLORS = 16;
+
+    // The back gets the cell after the last card
+    private static final int CELL_COUNT = 55;
+    private static final int BACK_CELL = CELL_COUNT - 1;
+
+    // Each cell is a small part of the sheet, so a few uploads don't cost a frame much
+    private static final int UPLOADS_PER_FRAME = 4;
+
+    private final ShaderProgram program;
+    private final Texture sheet;
+    private final int sheetColumns;
+    private final TextureRegion[] cells = new TextureRegion[CELL_COUNT];
+
+    private final float faceDesignWidthScale, faceDesignHeightScale;
+    private final float backDesignWidthScale, backDesignHeightScale;
+    private final float cornerRadius, faceBorderThickness, backBorderThickness;
+
+    private ExecutorService loader; // Made by the first preload
+    private final Queue<PreloadedCell> preloadedCells = new ConcurrentLinkedQueue<>();
+    private final boolean[] preloading = new boolean[CELL_COUNT];
+    // Changed by clearDesigns, so that cells preloaded before it are thrown away
+    private int generation = 0;
+
+    private final List<Color> borderColors = new ArrayList<>();
+    private boolean uniformsChanged = true;
+
+    private final Sprite sprite = new Sprite();
+    private final float[] vertices = new float[20];
+
+    // Cards drawn with this shader have the shape of RenderableCardEntity's defaults. Throws IllegalStateException if
+    // the shader doesn't compile.
+    CardShader() {
+        program = new ShaderProgram(Gdx.files.internal("shaders/card.vert"), Gdx.files.internal("shaders/card.frag"));
+        if(!program.isCompiled()) {
+            String log = program.getLog();
+            program.dispose();
+            throw new IllegalStateException(log);
+        }
+
+        faceDesignWidthScale = RenderableCardEntity.DEFAULT_FACE_DESIGN_SCALE;
+        faceDesignHeightScale = RenderableCardEntity.DEFAULT_FACE_DESIGN_SCALE;
+        backDesignWidthScale = RenderableCardEntity.DEFAULT_BACK_DESIGN_WIDTH_SCALE;
+        backDesignHeightScale = RenderableCardEntity.DEFAULT_BACK_DESIGN_HEIGHT_SCALE;
+        cornerRadius = RenderableCardEntity.DEFAULT_CORNER_RADIUS_IN_PIXELS;
+        faceBorderThickness = RenderableCardEntity.DEFAULT_FACE_BORDER_THICKNESS_IN_PIXELS;
+        backBorderThickness = RenderableCardEntity.DEFAULT_BACK_BORDER_THICKNESS_IN_PIXELS;
+
+        // The sheet is exactly as big as its cells, so the shader can tell where in a card it is from its coordinates
+        sheetColumns = Math.min(CELL_COUNT, getMaxTextureSize() / CardAtlas.SPRITE_WIDTH);
+        int sheetRows = (CELL_COUNT + sheetColumns - 1) / sheetColumns;
+        Pixmap blank = new Pixmap(sheetColumns * CardAtlas.SPRITE_WIDTH, sheetRows * CardAtlas.SPRITE_HEIGHT,
+                Pixmap.Format.RGBA8888);
+        sheet = new Texture(new PixmapTextureData(blank, null, false, true, false));
+        sheet.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+    }
+
+    // Whether or not the entity's face has the shape this shader draws
+    boolean drawsFaceOf(RenderableCardEntity entity) {
+        return entity.getCornerRadiusInPixels() == cornerRadius
+                && entity.getFaceBorderThicknessInPixels() == faceBorderThickness
+                && entity.getFaceDesignWidthScale() == faceDesignWidthScale
+                && entity.getFaceDesignHeightScale() == faceDesignHeightScale
+                && hasRoomFor(entity.getFaceBorderColor());
+    }
+
+    boolean drawsBackOf(RenderableCardEntity entity) {
+        return entity.getCornerRadiusInPixels() == cornerRadius
+                && entity.getBackBorderThicknessInPixels() == backBorderThickness
+                && entity.getBackDesignWidthScale() == backDesignWidthScale
+                && entity.getBackDesignHeightScale() == backDesignHeightScale
+                && hasRoomFor(entity.getBackBorderColor());
+    }
+
+    private boolean hasRoomFor(Color borderColor) {
+        return borderColors.size() < MAX_BORDER_COLORS || borderColors.contains(borderColor);
+    }
+
+    // The returned sprite is reused by every draw, so it must be drawn before this is called again
+    Sprite faceSprite(int cardNum) {
+        return setupSprite(cardNum);
+    }
+
+    Sprite backSprite() {
+        return setupSprite(BACK_CELL);
+    }
+
+    private Sprite setupSprite(int cell) {
+        if(cells[cell] == null && preloading[cell]) {
+            uploadPreloadedDesigns(Integer.MAX_VALUE);
+        }
+        // Not preloaded, or the loader hasn't gotten to it yet
+        if(cells[cell] == null) {
+            boolean isBack = cell == BACK_CELL;
+            Pixmap design = isBack ? RenderableCardEntity.getBackDesignPixmap()
+                    : RenderableCardEntity.getFaceDesignPixmap(cell);
+            Pixmap cellPixmap = createCellPixmap(design, isBack);
+            uploadCell(cell, cellPixmap);
+            cellPixmap.dispose();
+        }
+        sprite.setRegion(cells[cell]);
+        return sprite;
+    }
+
+    // Decodes every design that hasn't been uploaded yet on a background thread. The cells only reach the sheet once
+    // uploadPreloadedDesigns is called.
+    void preloadDesigns() {
+        if(loader == null) {
+            loader = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Card design loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        for(int cell = 0; cell < CELL_COUNT; cell++) {
+            if(cells[cell] != null || preloading[cell]) {
+                continue;
+            }
+            boolean isBack = cell == BACK_CELL;
+            if(isBack && !RenderableCardEntity.hasBackDesign()) {
+                continue;
+            }
+
+            // The file is found here, since the sprite folder can change while the loader is busy
+            FileHandle designFile = isBack ? RenderableCardEntity.getBackDesignFile()
+                    : RenderableCardEntity.getFaceDesignFile(cell);
+            int preloadCell = cell;
+            int preloadGeneration = generation;
+            preloading[cell] = true;
+            loader.execute(() -> {
+                try {
+                    Pixmap design = new Pixmap(designFile);
+                    Pixmap cellPixmap = createCellPixmap(design, isBack);
+                    design.dispose();
+                    preloadedCells.add(new PreloadedCell(preloadCell, preloadGeneration, cellPixmap));
+                } catch(GdxRuntimeException e) {
+                    // The cell is loaded when it's first drawn instead, which will report the problem properly
+                    Gdx.app.log("CardShader", "Couldn't preload " + designFile.path() + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    void uploadPreloadedDesigns() {
+        uploadPreloadedDesigns(UPLOADS_PER_FRAME);
+    }
+
+    private void uploadPreloadedDesigns(int maxUploads) {
+        int uploads = 0;
+        PreloadedCell preloaded;
+        while(uploads < maxUploads && (preloaded = preloadedCells.poll()) != null) {
+            if(preloaded.generation == generation && cells[preloaded.cell] == null) {
+                uploadCell(preloaded.cell, preloaded.pixmap);
+                uploads++;
+            }
+            if(preloaded.generation == generation) {
+                preloading[preloaded.cell] = false;
+            }
+            preloaded.pixmap.dispose();
+        }
+    }
+
+    // Safe to call from any thread, since it only touches the pixmaps it's given
+    private static Pixmap createCellPixmap(Pixmap design, boolean isBack) {
+        float widthScale = isBack ? RenderableCardEntity.DEFAULT_BACK_DESIGN_WIDTH_SCALE
+                : RenderableCardEntity.DEFAULT_FACE_DESIGN_SCALE;
+        float heightScale = isBack ? RenderableCardEntity.DEFAULT_BACK_DESIGN_HEIGHT_SCALE
+                : RenderableCardEntity.DEFAULT_FACE_DESIGN_SCALE;
+
+        Pixmap cellPixmap = new Pixmap(CardAtlas.SPRITE_WIDTH, CardAtlas.SPRITE_HEIGHT, Pixmap.Format.RGBA8888);
+        cellPixmap.setBlending(Pixmap.Blending.None);
+        cellPixmap.setFilter(Pixmap.Filter.BiLinear);
+        cellPixmap.drawPixmap(design,
+                0, 0, design.getWidth(), design.getHeight(),
+                (int)(0.5f * (CardAtlas.SPRITE_WIDTH - (CardAtlas.SPRITE_WIDTH * widthScale))),
+                (int)(0.5f * (CardAtlas.SPRITE_HEIGHT - (CardAtlas.SPRITE_HEIGHT * heightScale))),
+                (int)(CardAtlas.SPRITE_WIDTH * widthScale),
+                (int)(CardAtlas.SPRITE_HEIGHT * heightScale));
+        return cellPixmap;
+    }
+
+    private void uploadCell(int cell, Pixmap cellPixmap) {
+        int x = (cell % sheetColumns) * CardAtlas.SPRITE_WIDTH;
+        int y = (cell / sheetColumns) * CardAtlas.SPRITE_HEIGHT;
+        sheet.draw(cellPixmap, x, y);
+        cells[cell] = new TextureRegion(sheet, x, y, CardAtlas.SPRITE_WIDTH, CardAtlas.SPRITE_HEIGHT);
+    }
+
+    // Designs are uploaded again the next time they're drawn or preloaded. Cells that are still being preloaded are
+    // thrown away once they're done.
+    void clearDesigns() {
+        Arrays.fill(cells, null);
+        Arrays.fill(preloading, false);
+        generation++;
+    }
+
+    // Draws a sprite from faceSprite or backSprite once it's been positioned
+    void draw(SpriteBatch batch, Sprite sprite, boolean isBack, Color backgroundColor, Color borderColor) {
+        if(batch.getShader() != program) {
+            batch.setShader(program);
+            uniformsChanged = true;
+        }
+
+        int borderIndex = borderColors.indexOf(borderColor);
+        if(borderIndex < 0) {
+            borderIndex = borderColors.size();
+            borderColors.add(new Color(borderColor));
+            uniformsChanged = true;
+        }
+        if(uniformsChanged) {
+            batch.flush();
+            setUniforms();
+        }
+
+        System.arraycopy(sprite.getVertices(), 0, vertices, 0, vertices.length);
+        float tint = cardColorBits(backgroundColor);
+        for(int i = 0; i < vertices.length; i += 5) {
+            vertices[i + SpriteBatch.C1 - SpriteBatch.X1] = tint;
+            vertices[i + SpriteBatch.U1 - SpriteBatch.X1] += CARD_U_OFFSET + (2 * borderIndex);
+            if(isBack) {
+                vertices[i + SpriteBatch.V1 - SpriteBatch.X1] += BACK_V_OFFSET;
+            }
+        }
+        batch.draw(sheet, vertices, 0, vertices.length);
+    }
+
+    // Packs the background color the way card.vert expects it: alpha is 4 * (alpha out of 63) + 1, which is always odd
+    // and never 255, so the packed float is never NaN
+    private static float cardColorBits(Color color) {
+        int alpha = 4 * Math.round(color.a * 63) + 1;
+        int abgr = (alpha << 24)
+                | ((int)(255 * color.b) << 16)
+                | ((int)(255 * color.g) << 8)
+                | (int)(255 * color.r);
+        return NumberUtils.intBitsToFloat(abgr);
+    }
+
+    // The program has to be bound, which it is while it's the batch's shader
+    private void setUniforms() {
+        program.setUniformf("u_sheetCells", (float)sheet.getWidth() / CardAtlas.SPRITE_WIDTH,
+                (float)sheet.getHeight() / CardAtlas.SPRITE_HEIGHT);
+        program.setUniformf("u_cardSize",
+                RenderableCardEntity.CARD_WIDTH_IN_PIXELS, RenderableCardEntity.CARD_HEIGHT_IN_PIXELS);
+        program.setUniformf("u_cornerRadius", cornerRadius);
+        program.setUniformf("u_faceBorderThickness", faceBorderThickness);
+        program.setUniformf("u_backBorderThickness", backBorderThickness);
+
+        float[] colors = new float[4 * MAX_BORDER_COLORS];
+        for(int i = 0; i < borderColors.size(); i++) {
+            Color color = borderColors.get(i);
+            colors[4 * i] = color.r;
+            colors[4 * i + 1] = color.g;
+            colors[4 * i + 2] = color.b;
+            colors[4 * i + 3] = color.a;
+        }
+        program.setUniform4fv("u_borderColors", colors, 0, colors.length);
+        uniformsChanged = false;
+    }
+
+    long getResidentBytes() {
+        return 4L * sheet.getWidth() * sheet.getHeight();
+    }
+
+    // The shader must not be set on any batch afterwards
+    void dispose() {
+        if(loader != null) {
+            loader.shutdownNow();
+        }
+        PreloadedCell preloaded;
+        while((preloaded = preloadedCells.poll()) != null) {
+            preloaded.pixmap.dispose();
+        }
+        program.dispose();
+        sheet.dispose();
+    }
+
+    private static int getMaxTextureSize() {
+        IntBuffer maxTextureSize = BufferUtils.newIntBuffer(16);
+        Gdx.gl.glGetIntegerv(GL20.GL_MAX_TEXTURE_SIZE, maxTextureSize);
+        return maxTextureSize.get(0);
+    }
+
+    private static class PreloadedCell {
+        final int cell;
+        final int generation;
+        final Pixmap pixmap;
+
+        PreloadedCell(int cell, int generation, Pixmap pixmap) {
+            this.cell = cell;
+            this.generation = generation;
+            this.pixmap = pixmap;
+        }
+    }
+}
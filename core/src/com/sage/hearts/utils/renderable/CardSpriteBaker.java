@@ -0,0 +1,66 @@
+package com.sage.hearts.utils.renderable;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.PixmapPackerIO;
+
+import java.io.IOException;
+
+// Renders card sprites ahead of time, when the game is built, into an atlas that CardAtlas loads instead of rounding
+// corners and drawing borders pixel by pixel while the game is running. Each sprite is baked as the entity it's given
+// currently looks, so the caller sets up every selection, highlight and color variant it wants baked. Sprites that
+// weren't baked are still rendered at runtime. Cards the CardShader can draw never use these sprites, so the atlas is
+// only a fallback for when the shader is disabled or doesn't compile.
+public class CardSpriteBaker {
+    // Relative to the assets folder
+    public static final String ATLAS_PATH = "baked_cards/cards.atlas";
+
+    private final PixmapPacker packer = new PixmapPacker(CardAtlas.MAX_PAGE_SIZE, CardAtlas.MAX_PAGE_SIZE,
+            Pixmap.Format.RGBA8888, CardAtlas.PADDING, true);
+    private int spriteCount = 0;
+
+    public void bakeFace(RenderableCardEntity entity) {
+        String regionName = entity.faceRegionName();
+        if(packer.getRect(regionName) == null) {
+            bake(regionName, entity.createFaceSpritePixmap());
+        }
+    }
+
+    // Nothing is baked if the sprite folder has no back design
+    public void bakeBack(RenderableCardEntity entity) {
+        String regionName = entity.backRegionName();
+        if(packer.getRect(regionName) == null && RenderableCardEntity.hasBackDesign()) {
+            bake(regionName, entity.createBackSpritePixmap());
+        }
+    }
+
+    private void bake(String regionName, Pixmap spritePixmap) {
+        Pixmap scaledPixmap = CardAtlas.scaleSprite(spritePixmap);
+        spritePixmap.dispose();
+        packer.pack(regionName, scaledPixmap);
+        scaledPixmap.dispose();
+        spriteCount++;
+    }
+
+    public int getSpriteCount() {
+        return spriteCount;
+    }
+
+    public int getPageCount() {
+        return packer.getPages().size;
+    }
+
+    // Writes the atlas file along with a PNG for each page next to it
+    public void save(FileHandle atlasFile) throws IOException {
+        PixmapPackerIO.SaveParameters parameters = new PixmapPackerIO.SaveParameters();
+        parameters.minFilter = Texture.TextureFilter.Linear;
+        parameters.magFilter = Texture.TextureFilter.Linear;
+        new PixmapPackerIO().save(atlasFile, packer, parameters);
+    }
+
+    public void dispose() {
+        packer.dispose();
+    }
+}
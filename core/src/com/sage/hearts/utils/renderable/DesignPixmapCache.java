@@ -0,0 +1,84 @@
+package com.sage.hearts.utils.renderable;
+
+import com.badlogic.gdx.graphics.Pixmap;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Keeps the most recently used card design pixmaps, keyed by card number, disposing the least recently used ones
+// once they take up more than maxBytes. A design is only needed to make a card's sprite, so one that's been evicted
+// just has to be decoded again if a card needs a new sprite made from it.
+class DesignPixmapCache {
+    private final long maxBytes;
+    // Iterates from the least to the most recently used design
+    private final LinkedHashMap<Integer, Pixmap> pixmaps = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    DesignPixmapCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // The returned pixmap may be disposed by the next call, so it shouldn't be kept
+    Pixmap get(int key, IntFunction<Pixmap> loader) {
+        Pixmap pixmap = pixmaps.get(key);
+        if(pixmap != null) {
+            hits++;
+            return pixmap;
+        }
+
+        misses++;
+        pixmap = loader.apply(key);
+        pixmaps.put(key, pixmap);
+        residentBytes += bytesOf(pixmap);
+        evictDownTo(maxBytes);
+        return pixmap;
+    }
+
+    boolean contains(int key) {
+        return pixmaps.containsKey(key);
+    }
+
+    // The most recently used design is never evicted, so that get can always return it
+    private void evictDownTo(long bytes) {
+        Iterator<Map.Entry<Integer, Pixmap>> leastRecentlyUsed = pixmaps.entrySet().iterator();
+        while(residentBytes > bytes && pixmaps.size() > 1) {
+            Pixmap pixmap = leastRecentlyUsed.next().getValue();
+            leastRecentlyUsed.remove();
+            residentBytes -= bytesOf(pixmap);
+            pixmap.dispose();
+            evictions++;
+        }
+    }
+
+    void clear() {
+        pixmaps.values().forEach(Pixmap::dispose);
+        pixmaps.clear();
+        residentBytes = 0;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    long getEvictions() {
+        return evictions;
+    }
+
+    long getResidentBytes() {
+        return residentBytes;
+    }
+
+    private static long bytesOf(Pixmap pixmap) {
+        return pixmap.getPixels().capacity();
+    }
+}
@@ -4,9 +4,9 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.viewport.Viewport;
@@ -25,17 +25,25 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
     public static final float HEIGHT_TO_WIDTH_RATIO = (float)CARD_HEIGHT_IN_PIXELS / (float)CARD_WIDTH_IN_PIXELS;
     public static final float WIDTH_TO_HEIGHT_RATIO = (float)CARD_WIDTH_IN_PIXELS / (float)CARD_HEIGHT_IN_PIXELS;
 
+    // The card shader draws cards with these, so it can be made before any card is
+    static final int DEFAULT_CORNER_RADIUS_IN_PIXELS = (int)(0.075f * CARD_WIDTH_IN_PIXELS);
+    static final int DEFAULT_FACE_BORDER_THICKNESS_IN_PIXELS = (int)(0.018f * CARD_WIDTH_IN_PIXELS);
+    static final int DEFAULT_BACK_BORDER_THICKNESS_IN_PIXELS = DEFAULT_CORNER_RADIUS_IN_PIXELS;
+    static final float DEFAULT_FACE_DESIGN_SCALE = 0.95f;
+    static final float DEFAULT_BACK_DESIGN_HEIGHT_SCALE = ((float)CARD_HEIGHT_IN_PIXELS - (2 * (float)DEFAULT_BACK_BORDER_THICKNESS_IN_PIXELS)) / (float)CARD_HEIGHT_IN_PIXELS;
+    static final float DEFAULT_BACK_DESIGN_WIDTH_SCALE = ((float)CARD_WIDTH_IN_PIXELS - (2 * (float)DEFAULT_BACK_BORDER_THICKNESS_IN_PIXELS)) / (float)CARD_WIDTH_IN_PIXELS;
+
     // Default variable values:
-    public final int defaultCornerRadiusInPixels = (int)(0.075f * CARD_WIDTH_IN_PIXELS);
+    public final int defaultCornerRadiusInPixels = DEFAULT_CORNER_RADIUS_IN_PIXELS;
 
-    public final int defaultFaceBorderThicknessInPixels = (int)(0.018f * CARD_WIDTH_IN_PIXELS);
-    public final int defaultBackBorderThicknessInPixels = defaultCornerRadiusInPixels;
+    public final int defaultFaceBorderThicknessInPixels = DEFAULT_FACE_BORDER_THICKNESS_IN_PIXELS;
+    public final int defaultBackBorderThicknessInPixels = DEFAULT_BACK_BORDER_THICKNESS_IN_PIXELS;
 
-    public final float defaultFaceDesignHeightScale = 0.95f;
-    public final float defaultFaceDesignWidthScale = 0.95f;
+    public final float defaultFaceDesignHeightScale = DEFAULT_FACE_DESIGN_SCALE;
+    public final float defaultFaceDesignWidthScale = DEFAULT_FACE_DESIGN_SCALE;
 
-    public final float defaultBackDesignHeightScale = ((float)CARD_HEIGHT_IN_PIXELS - (2 * (float)defaultBackBorderThicknessInPixels)) / (float)CARD_HEIGHT_IN_PIXELS;
-    public final float defaultBackDesignWidthScale = ((float)CARD_WIDTH_IN_PIXELS - (2 * (float)defaultBackBorderThicknessInPixels)) / (float)CARD_WIDTH_IN_PIXELS;
+    public final float defaultBackDesignHeightScale = DEFAULT_BACK_DESIGN_HEIGHT_SCALE;
+    public final float defaultBackDesignWidthScale = DEFAULT_BACK_DESIGN_WIDTH_SCALE;
 
     public final Color defaultFaceBorderColor = new Color(0, 0, 0, 1);
     public final Color defaultBackBorderColor = new Color(1, 1, 1, 1);
@@ -80,14 +88,19 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
     private static FileHandle defaultSpriteFolder = Gdx.files.internal("playing_cards/");
     private static FileHandle spriteFolder = defaultSpriteFolder;
 
-    private static HashMap<Integer, Sprite> backSpriteCache = new HashMap<>();
-    private static HashMap<Integer, Sprite> faceSpriteCache = new HashMap<>();
-    private static HashMap<Integer, Pixmap> faceDesignPixmaps = new HashMap<>();
-    private static Pixmap backPixmap = null;
+    private static CardAtlas atlas = null; // Made on first use, since it needs GL
+    private static CardShader cardShader = null; // Also made on first use
+    private static boolean cardShaderEnabled = true;
+    // A full size design takes up about 2.5 MB, so this keeps a dozen or so of them
+    private static final long MAX_DESIGN_BYTES = 32L * 1024 * 1024;
+    private static final int BACK_DESIGN = -1;
+    private static final DesignPixmapCache designPixmaps = new DesignPixmapCache(MAX_DESIGN_BYTES);
 
     private Sprite backSprite = null;
     private Sprite faceSprite = null;
-    private int spriteParametersHash;
+    // Names of the atlas sprites this card has acquired, so it can release them
+    private String faceSpriteName = null;
+    private String backSpriteName = null;
 
     private static String imageExtension = ".png";
 
@@ -102,7 +115,6 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
 
     public RenderableCardEntity(CardT card) {
         this.card = card;
-        spriteParametersHash = spriteParametersHash();
         mover = RenderableCardMover.scaledDistanceMover(this.card);
         baseRect.setPosition(0, 0);
         displayRect.setPosition(0, 0);
@@ -738,9 +750,16 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
     }
 
     protected final void invalidateSprites() {
+        if(faceSpriteName != null) {
+            atlas.release(faceSpriteName);
+            faceSpriteName = null;
+        }
+        if(backSpriteName != null) {
+            atlas.release(backSpriteName);
+            backSpriteName = null;
+        }
         backSprite = null;
         faceSprite = null;
-        spriteParametersHash = spriteParametersHash();
     }
 
     public static void setSpriteFolder(FileHandle newSpriteFolder) {
@@ -760,19 +779,13 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
     public static void disposeEntity(RenderableCardEntity entity) {
         allEntities.remove(entity);
         entity.isDisposed = true;
+        entity.invalidateSprites();
 
-        // Only dispose of the texture if no other card exists which uses the same texture
-        if(allEntities.stream().noneMatch(c -> c.spriteParametersHash == entity.spriteParametersHash)) {
-            if(entity.faceSprite != null) {
-                entity.faceSprite.getTexture().dispose();
-            }
-            if(entity.backSprite != null) {
-                entity.backSprite.getTexture().dispose();
-            }
-            faceSpriteCache.remove(entity.spriteParametersHash);
-            backSpriteCache.remove(entity.spriteParametersHash);
+        // Sprites no card holds are only evicted to make room for new ones, so the pages are freed once no card is
+        // left to use them
+        if(allEntities.isEmpty() && atlas != null) {
+            atlas.clear();
         }
-        entity.invalidateSprites();
     }
 
     public static void disposeAllEntities() {
@@ -788,43 +801,57 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
     }
 
     private static void resetPixmaps() {
-        resetBackPixmaps();
-        resetFacePixmaps();
+        designPixmaps.clear();
+        if(cardShader != null) {
+            cardShader.clearDesigns();
+        }
         disposeAllEntities();
     }
 
-    private static void resetBackPixmaps() {
-        backPixmap.dispose();
-        backPixmap = null;
+    // The design pixmaps are owned by designPixmaps, so these mustn't be disposed or kept by the caller
+    static Pixmap getFaceDesignPixmap(int cardNum) {
+        return designPixmaps.get(cardNum, RenderableCardEntity::loadFaceDesignPixmap);
+    }
+
+    static Pixmap getBackDesignPixmap() {
+        return designPixmaps.get(BACK_DESIGN, design -> loadBackPixmap());
+    }
+
+    static boolean hasBackDesign() {
+        return designPixmaps.contains(BACK_DESIGN) || getBackDesignFile().exists();
     }
 
-    private static void resetFacePixmaps() {
-        faceDesignPixmaps.values().forEach(Pixmap::dispose);
-        faceDesignPixmaps.clear();
+    static FileHandle getBackDesignFile() {
+        return spriteFolder.child("back" + imageExtension);
     }
 
-    private static void loadBackPixmap() {
-        Pixmap originalImagePixmap = new Pixmap(spriteFolder.child("back" + imageExtension));
-        backPixmap = new Pixmap(CARD_WIDTH_IN_PIXELS, CARD_HEIGHT_IN_PIXELS, originalImagePixmap.getFormat());
+    static FileHandle getFaceDesignFile(int cardNum) {
+        String cardImageName = (Card.isJoker(cardNum)) ? Rank.fromCardNum(cardNum).toString() + imageExtension
+                : Rank.fromCardNum(cardNum).toString() + "_of_" + Suit.fromCardNum(cardNum).toString() + imageExtension;
+        return spriteFolder.child(cardImageName);
+    }
+
+    private static Pixmap loadBackPixmap() {
+        Pixmap originalImagePixmap = new Pixmap(getBackDesignFile());
+        Pixmap backPixmap = new Pixmap(CARD_WIDTH_IN_PIXELS, CARD_HEIGHT_IN_PIXELS, originalImagePixmap.getFormat());
         backPixmap.drawPixmap(originalImagePixmap,
                 0, 0, originalImagePixmap.getWidth(), originalImagePixmap.getHeight(),
                 0, 0, backPixmap.getWidth(), backPixmap.getHeight());
         originalImagePixmap.dispose();
+        return backPixmap;
     }
 
-    private static void loadFaceDesignPixmapForCard(int cardNum) {
-        String cardImageName = (Card.isJoker(cardNum)) ? Rank.fromCardNum(cardNum).toString() + imageExtension
-                : Rank.fromCardNum(cardNum).toString() + "_of_" + Suit.fromCardNum(cardNum).toString() + imageExtension;
+    private static Pixmap loadFaceDesignPixmap(int cardNum) {
         Pixmap originalImagePixmap =
-                new Pixmap(spriteFolder.child(cardImageName));
+                new Pixmap(getFaceDesignFile(cardNum));
         Pixmap resizedImagePixmap =
                 new Pixmap(CARD_WIDTH_IN_PIXELS, CARD_HEIGHT_IN_PIXELS, originalImagePixmap.getFormat());
 
         resizedImagePixmap.drawPixmap(originalImagePixmap,
                 0, 0, originalImagePixmap.getWidth(), originalImagePixmap.getHeight(),
                 0, 0, resizedImagePixmap.getWidth(), resizedImagePixmap.getHeight());
-        faceDesignPixmaps.put(cardNum, resizedImagePixmap);
         originalImagePixmap.dispose();
+        return resizedImagePixmap;
     }
 
     private static void roundPixmapCorners(Pixmap pixmap, int radius) {
@@ -915,47 +942,130 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
         }
     }
 
-    private void setupThisCardFaceSprite() {
-        if(faceDesignPixmaps.get(card.getCardNum()) == null) {
-            loadFaceDesignPixmapForCard(card.getCardNum());
+    // Cards whose shape the shader can't draw, and every card if the shader is disabled or doesn't compile, are drawn
+    // from sprites in the atlas instead
+    private static CardShader getCardShader() {
+        if(cardShader == null && cardShaderEnabled) {
+            try {
+                cardShader = new CardShader();
+            } catch(IllegalStateException e) {
+                Gdx.app.log("RenderableCardEntity", "Card shader didn't compile, drawing cards from sprites:\n"
+                        + e.getMessage());
+                cardShaderEnabled = false;
+            }
         }
+        return cardShaderEnabled ? cardShader : null;
+    }
 
-        Sprite cachedSprite = faceSpriteCache.get(spriteParametersHash);
-        if(cachedSprite != null) {
-            faceSprite = new Sprite(cachedSprite);
-        } else {
-            faceSprite = setupSpriteFromPixmap(
-                    faceDesignPixmaps.get(card.getCardNum()), getFaceBackgroundColor(),
-                    getFaceDesignWidthScale(), getFaceDesignHeightScale(),
-                    getFaceBorderThicknessInPixels(), getCornerRadiusInPixels(),
-                    getFaceBorderColor());
-            faceSpriteCache.put(spriteParametersHash, new Sprite(faceSprite));
+    // While the shader is disabled, every card is drawn from sprites in the atlas
+    public static void setCardShaderEnabled(boolean enabled) {
+        cardShaderEnabled = enabled;
+    }
+
+    // Starts decoding every card design on a background thread, so that cards drawn by the card shader don't have to
+    // wait for theirs. Like uploadPreloadedDesigns, this must be called from the render thread.
+    public static void preloadDesigns() {
+        CardShader shader = getCardShader();
+        if(shader != null) {
+            shader.preloadDesigns();
         }
     }
 
-    private void setupThisCardBackSprite() {
-        if(backPixmap == null) {
-            loadBackPixmap();
+    // Uploads the next few designs preloadDesigns has finished decoding. It's meant to be called every frame, so that
+    // the uploads are spread out.
+    public static void uploadPreloadedDesigns() {
+        if(cardShader != null) {
+            cardShader.uploadPreloadedDesigns();
         }
+    }
 
-        Sprite cachedSprite = backSpriteCache.get(spriteParametersHash);
-        if(cachedSprite != null) {
-            backSprite = new Sprite(cachedSprite);
-        } else {
-            backSprite = setupSpriteFromPixmap(
-                    backPixmap, getBackBackgroundColor(),
-                    getBackDesignWidthScale(), getBackDesignHeightScale(),
-                    getBackBorderThicknessInPixels(), getCornerRadiusInPixels(),
-                    getBackBorderColor());
-            backSpriteCache.put(spriteParametersHash, new Sprite(backSprite));
+    public static CardCacheStats getCacheStats() {
+        long textureBytes = ((atlas != null) ? atlas.getResidentBytes() : 0)
+                + ((cardShader != null) ? cardShader.getResidentBytes() : 0);
+        return new CardCacheStats(
+                (atlas != null) ? atlas.getHits() : 0,
+                (atlas != null) ? atlas.getMisses() : 0,
+                (atlas != null) ? atlas.getEvictions() : 0,
+                designPixmaps.getHits(), designPixmaps.getMisses(), designPixmaps.getEvictions(),
+                textureBytes, designPixmaps.getResidentBytes());
+    }
+
+    private static CardAtlas getAtlas() {
+        if(atlas == null) {
+            atlas = new CardAtlas();
+        }
+        return atlas;
+    }
+
+    private void setupThisCardFaceSprite() {
+        String regionName = faceRegionName();
+        TextureRegion region = getAtlas().acquire(regionName);
+        if(region == null) {
+            Pixmap spritePixmap = createFaceSpritePixmap();
+            region = getAtlas().pack(regionName, spritePixmap);
+            spritePixmap.dispose();
+        }
+        faceSpriteName = regionName;
+        faceSprite = new Sprite(region);
+    }
+
+    private void setupThisCardBackSprite() {
+        String regionName = backRegionName();
+        TextureRegion region = getAtlas().acquire(regionName);
+        if(region == null) {
+            Pixmap spritePixmap = createBackSpritePixmap();
+            region = getAtlas().pack(regionName, spritePixmap);
+            spritePixmap.dispose();
         }
+        backSpriteName = regionName;
+        backSprite = new Sprite(region);
+    }
+
+    // Region names are spelled out from every sprite parameter rather than hashed, so two different sprites never
+    // share a region. CardSpriteBaker bakes sprites under these same names.
+    String faceRegionName() {
+        return "face_" + card.getCardNum() + "_" + spriteParametersName(cornerRadiusInPixels,
+                faceBorderThicknessInPixels, faceDesignHeightScale, faceDesignWidthScale,
+                faceBorderColor, faceBackgroundColor);
+    }
+
+    // Every card shares its back, so backs are packed once per set of back parameters rather than once per card
+    String backRegionName() {
+        return "back_" + spriteParametersName(cornerRadiusInPixels,
+                backBorderThicknessInPixels, backDesignHeightScale, backDesignWidthScale,
+                backBorderColor, backBackgroundColor);
+    }
+
+    private static String spriteParametersName(int cornerRadius, int borderThickness,
+                                               float designHeightScale, float designWidthScale,
+                                               Color borderColor, Color backgroundColor) {
+        return cornerRadius + "_" + borderThickness + "_" + designHeightScale + "_" + designWidthScale
+                + "_" + borderColor + "_" + backgroundColor;
+    }
+
+    // The caller disposes the returned pixmap
+    Pixmap createFaceSpritePixmap() {
+        return setupSpritePixmap(
+                getFaceDesignPixmap(card.getCardNum()), getFaceBackgroundColor(),
+                getFaceDesignWidthScale(), getFaceDesignHeightScale(),
+                getFaceBorderThicknessInPixels(), getCornerRadiusInPixels(),
+                getFaceBorderColor());
+    }
+
+    // The caller disposes the returned pixmap
+    Pixmap createBackSpritePixmap() {
+        return setupSpritePixmap(
+                getBackDesignPixmap(), getBackBackgroundColor(),
+                getBackDesignWidthScale(), getBackDesignHeightScale(),
+                getBackBorderThicknessInPixels(), getCornerRadiusInPixels(),
+                getBackBorderColor());
     }
 
-    private static Sprite setupSpriteFromPixmap(Pixmap designPixmap,
-                                         Color backgroundColor,
-                                         float designWidthScale, float designHeightScale,
-                                         int borderThicknessInPixels, int cornerRadiusInPixels,
-                                         Color borderColor) {
+    private static Pixmap setupSpritePixmap(Pixmap designPixmap,
+                                            Color backgroundColor,
+                                            float designWidthScale, float designHeightScale,
+                                            int borderThicknessInPixels, int cornerRadiusInPixels,
+                                            Color borderColor) {
         Pixmap spritePixmap = new Pixmap(designPixmap.getWidth(), designPixmap.getHeight(), designPixmap.getFormat());
         spritePixmap.setColor(backgroundColor);
         spritePixmap.fill();
@@ -972,11 +1082,7 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
                 cornerRadiusInPixels,
                 borderThicknessInPixels,
                 borderColor);
-
-        Sprite sprite = new Sprite(new Texture(spritePixmap));
-        sprite.getTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
-        spritePixmap.dispose();
-        return sprite;
+        return spritePixmap;
     }
 
     public final void cardChanged() {
@@ -1009,14 +1115,8 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
         }
 
         if(isFaceUp()) {
-            if(faceSprite == null) {
-                setupThisCardFaceSprite();
-            }
             renderFace(batch, viewport, x, y, width, height, originXProportion, originYProportion, rotationDeg);
         } else {
-            if(backSprite == null) {
-                setupThisCardBackSprite();
-            }
             renderBack(batch, viewport, x, y, width, height, originXProportion, originYProportion, rotationDeg);
         }
     }
@@ -1024,22 +1124,42 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
     private void renderFace(SpriteBatch batch, Viewport viewport,
                             float x, float y, float width, float height,
                             float originXProportion, float originYProportion, float rotationDeg) {
-        drawSprite(batch, viewport, faceSprite,
-                x, y, width, height,
-                originXProportion, originYProportion, rotationDeg);
+        CardShader shader = getCardShader();
+        if(shader != null && shader.drawsFaceOf(this)) {
+            Sprite sprite = shader.faceSprite(card.getCardNum());
+            positionSprite(viewport, sprite, x, y, width, height, originXProportion, originYProportion, rotationDeg);
+            shader.draw(batch, sprite, false, getFaceBackgroundColor(), getFaceBorderColor());
+            return;
+        }
+
+        if(faceSprite == null) {
+            setupThisCardFaceSprite();
+        }
+        positionSprite(viewport, faceSprite, x, y, width, height, originXProportion, originYProportion, rotationDeg);
+        faceSprite.draw(batch);
     }
 
     private void renderBack(SpriteBatch batch, Viewport viewport,
                             float x, float y, float width, float height,
                             float originXProportion, float originYProportion, float rotationDeg) {
-        drawSprite(batch, viewport, backSprite,
-                x, y, width, height,
-                originXProportion, originYProportion, rotationDeg);
+        CardShader shader = getCardShader();
+        if(shader != null && shader.drawsBackOf(this)) {
+            Sprite sprite = shader.backSprite();
+            positionSprite(viewport, sprite, x, y, width, height, originXProportion, originYProportion, rotationDeg);
+            shader.draw(batch, sprite, true, getBackBackgroundColor(), getBackBorderColor());
+            return;
+        }
+
+        if(backSprite == null) {
+            setupThisCardBackSprite();
+        }
+        positionSprite(viewport, backSprite, x, y, width, height, originXProportion, originYProportion, rotationDeg);
+        backSprite.draw(batch);
     }
 
-    private static void drawSprite(SpriteBatch batch, Viewport viewport, Sprite sprite,
-                                   float x, float y, float width, float height,
-                                   float originXProportion, float originYProportion, float rotationDeg) {
+    private static void positionSprite(Viewport viewport, Sprite sprite,
+                                       float x, float y, float width, float height,
+                                       float originXProportion, float originYProportion, float rotationDeg) {
         // TODO: Maybe this rounding should only be done when position changes, but I'm too lazy to do that right now
 
         // vecXY is initialized with world coordinates for card position
@@ -1063,22 +1183,6 @@ public class RenderableCardEntity<T extends RenderableCardEntity, CardT extends
         sprite.setBounds(vecXY.x, vecXY.y, width, height);
         sprite.setOrigin(originXProportion * width, originYProportion * height);
         sprite.setRotation(rotationDeg);
-        sprite.draw(batch);
-    }
-
-    public int spriteParametersHash() {
-        return Objects.hash(cornerRadiusInPixels,
-                faceBorderThicknessInPixels,
-                backBorderThicknessInPixels,
-                faceDesignHeightScale,
-                faceDesignWidthScale,
-                backDesignHeightScale,
-                backDesignWidthScale,
-                faceBorderColor,
-                backBorderColor,
-                faceBackgroundColor,
-                backBackgroundColor,
-                card.getCardNum());
     }
 
     @Override
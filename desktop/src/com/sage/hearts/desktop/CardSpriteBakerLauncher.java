@@ -0,0 +1,61 @@
+package com.sage.hearts.desktop;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglFiles;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.sage.hearts.client.game.GameState;
+import com.sage.hearts.client.game.RenderableHeartsCard;
+import com.sage.hearts.utils.renderable.CardSpriteBaker;
+
+import java.io.IOException;
+
+// Run by the bakeCardSprites task from the assets folder. Bakes every look a card takes on during a game: in a hand,
+// selected, highlighted, and played to the table.
+public class CardSpriteBakerLauncher {
+	public static void main(String[] arg) throws IOException {
+		// Pixmaps only need the natives and file access, not a whole application
+		GdxNativesLoader.load();
+		Gdx.files = new LwjglFiles();
+
+		CardSpriteBaker baker = new CardSpriteBaker();
+		for(int cardNum = 0; cardNum < 52; cardNum++) {
+			bakeCard(baker, new RenderableHeartsCard(cardNum).entity());
+		}
+
+		FileHandle atlasFile = Gdx.files.local(CardSpriteBaker.ATLAS_PATH);
+		atlasFile.parent().emptyDirectory();
+		baker.save(atlasFile);
+		baker.dispose();
+		System.out.println("Baked " + baker.getSpriteCount() + " card sprites onto " + baker.getPageCount()
+				+ " pages in " + atlasFile.parent().path());
+	}
+
+	private static void bakeCard(CardSpriteBaker baker, RenderableHeartsCard.RenderableHeartsCardEntity entity) {
+		entity.setSelectable(true).setHighlightable(true);
+
+		// In a hand
+		baker.bakeFace(entity);
+		baker.bakeBack(entity);
+		entity.setSelected(true);
+		baker.bakeFace(entity);
+		entity.setHighlighted(true);
+		baker.bakeFace(entity);
+		entity.setSelected(false);
+		baker.bakeFace(entity);
+		baker.bakeBack(entity);
+		entity.setHighlighted(false);
+
+		// Played to the table, the way GameState colors plays
+		entity.defaultFaceBackgroundColor.set(GameState.basePlayColor);
+		entity.resetFaceBackgroundColor();
+		baker.bakeFace(entity);
+		entity.setFaceBackgroundColor(GameState.winningPlayColor);
+		baker.bakeFace(entity);
+		entity.defaultFaceBackgroundColor.set(Color.WHITE);
+		entity.resetFaceBackgroundColor();
+
+		entity.dispose();
+	}
+}
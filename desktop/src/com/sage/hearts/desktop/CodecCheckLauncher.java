@@ -0,0 +1,171 @@
+package com.sage.hearts.desktop;
+
+import com.sage.hearts.client.network.ClientCode;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.network.ServerCode;
+import com.sage.hearts.server.network.ServerPacket;
+import com.sage.hearts.utils.network.NetworkCode;
+import com.sage.hearts.utils.network.Packet;
+import com.sage.hearts.utils.network.PacketCodec;
+import com.sage.hearts.utils.network.PacketField;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Run by the codecCheck task. Builds packets for every ServerCode and ClientCode from the fields each code declares,
+// sends them through BinaryPacketCodec and SerializationPacketCodec, and checks both give back the same packet:
+// once with no fields, once with each field on its own, and once with every field set to typical values and once to
+// extreme ones. Frames are decoded through ServerPacket.decode and ClientPacket.decode, the way connections read
+// them. Card sets are compared as sets, since the binary codec always decodes them in card num order. Exits with
+// status 1 if any packet doesn't come back the same.
+public class CodecCheckLauncher {
+	private static final String LONG_STRING = String.join("", Collections.nCopies(40, "Player ♥ "));
+
+	private static int packetsChecked = 0;
+	private static int failures = 0;
+
+	public static void main(String[] arg) {
+		checkCodes(ServerCode.values(), ServerPacket::new, ServerPacket.BINARY_CODEC, ServerPacket.LEGACY_CODEC,
+				ServerPacket::decode);
+		checkCodes(ClientCode.values(), ClientPacket::new, ClientPacket.BINARY_CODEC, ClientPacket.LEGACY_CODEC,
+				ClientPacket::decode);
+
+		System.out.println(packetsChecked + " packets checked, " + failures + " failed");
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+	private static <T extends NetworkCode, P extends Packet<T>> void checkCodes(
+			T[] codes, Function<T, P> packetFactory, PacketCodec<P> binaryCodec, PacketCodec<P> legacyCodec,
+			Function<byte[], P> decoder) {
+		for(T code : codes) {
+			PacketField[] fields = code.getFields();
+			List<P> packets = new ArrayList<>();
+			packets.add(packetFactory.apply(code));
+			if(fields.length > 1) {
+				for(PacketField field : fields) {
+					P packet = packetFactory.apply(code);
+					packet.data.put(field.key, typicalValue(field.type));
+					packets.add(packet);
+				}
+			}
+			if(fields.length > 0) {
+				for(int variant = 0; variant < 3; variant++) {
+					P packet = packetFactory.apply(code);
+					for(PacketField field : fields) {
+						packet.data.put(field.key, (variant == 0) ? typicalValue(field.type)
+								: extremeValue(field.type, variant == 1));
+					}
+					packets.add(packet);
+				}
+			}
+
+			int legacyBytes = 0;
+			int binaryBytes = 0;
+			boolean passed = true;
+			for(P packet : packets) {
+				try {
+					byte[] binaryFrame = binaryCodec.encode(packet);
+					byte[] legacyFrame = legacyCodec.encode(packet);
+					passed &= isSame(packet, decoder.apply(binaryFrame), fields, "binary");
+					passed &= isSame(packet, decoder.apply(legacyFrame), fields, "legacy");
+					binaryBytes += binaryFrame.length;
+					legacyBytes += legacyFrame.length;
+				} catch(RuntimeException e) {
+					System.out.println("  " + code + " " + packet.data + " threw " + e);
+					passed = false;
+				}
+				packetsChecked++;
+			}
+			if(!passed) {
+				failures++;
+			}
+			System.out.println((passed ? "PASS " : "FAIL ") + code.getClass().getSimpleName() + "." + code + ": "
+					+ packets.size() + " packets, " + legacyBytes + " legacy and " + binaryBytes
+					+ " binary bytes in all");
+		}
+	}
+
+	private static boolean isSame(Packet<?> sent, Packet<?> received, PacketField[] fields, String codecName) {
+		boolean same = sent.networkCode == received.networkCode && sent.data.keySet().equals(received.data.keySet());
+		for(PacketField field : fields) {
+			if(sent.data.containsKey(field.key)) {
+				same &= Objects.equals(comparable(field.type, sent.data.get(field.key)),
+						comparable(field.type, received.data.get(field.key)));
+			}
+		}
+		if(!same) {
+			System.out.println("  " + codecName + " sent " + describe(sent) + " but got back " + describe(received));
+		}
+		return same;
+	}
+
+	private static Object comparable(PacketField.Type type, Object value) {
+		if(type == PacketField.Type.CARD_SET && value instanceof Collection) {
+			return new TreeSet<>((Collection<?>)value);
+		} else if(type == PacketField.Type.INT_ARRAY && value instanceof int[]) {
+			return Arrays.stream((int[])value).boxed().collect(Collectors.toList());
+		}
+		return value;
+	}
+
+	private static String describe(Packet<?> packet) {
+		Map<Object, Object> data = new TreeMap<>();
+		packet.data.forEach((key, value) -> data.put(key, (value instanceof int[])
+				? Arrays.toString((int[])value)
+				: value));
+		return packet.networkCode + " " + data;
+	}
+
+	private static Serializable typicalValue(PacketField.Type type) {
+		switch(type) {
+		case INT:
+			return 2;
+		case BOOLEAN:
+			return true;
+		case STRING:
+			return "Player 1";
+		case CARD:
+			return 37;
+		case CARD_SET:
+			return new ArrayList<>(Arrays.asList(40, 1, 27, 5));
+		case INT_ARRAY:
+			return new int[] {3, 1, 0, 2};
+		case INT_MAP:
+			return new HashMap<>(Map.of(0, 13, 1, 0, 2, 26, 3, -26));
+		case STRING_MAP:
+			return new HashMap<>(Map.of(0, "Player 0", 1, "Bot 1", 3, "héllo"));
+		default:
+			throw new IllegalArgumentException("No sample value for " + type);
+		}
+	}
+
+	// Empty and out of the way values when empty is true, or the largest and most awkward values otherwise
+	private static Serializable extremeValue(PacketField.Type type, boolean empty) {
+		switch(type) {
+		case INT:
+			return empty ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+		case BOOLEAN:
+			return !empty;
+		case STRING:
+			return empty ? "" : LONG_STRING;
+		case CARD:
+			// The jokers are the highest card nums
+			return empty ? 0 : 53;
+		case CARD_SET:
+			return empty
+					? new ArrayList<>()
+					: IntStream.range(0, 54).boxed().collect(Collectors.toCollection(ArrayList::new));
+		case INT_ARRAY:
+			return empty ? new int[0] : new int[] {Integer.MIN_VALUE, -1, 0, 127, 128, Integer.MAX_VALUE};
+		case INT_MAP:
+			return empty ? new HashMap<>() : new HashMap<>(Map.of(Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 300));
+		case STRING_MAP:
+			return empty ? new HashMap<>() : new HashMap<>(Map.of(-1, LONG_STRING, 200, ""));
+		default:
+			throw new IllegalArgumentException("No sample value for " + type);
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.sage.hearts.desktop;
+
+import com.sage.hearts.client.network.ClientCode;
+import com.sage.hearts.client.network.ClientConnection;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.Server;
+import com.sage.hearts.server.ServerOptions;
+import com.sage.hearts.server.network.ServerCode;
+import com.sage.hearts.server.network.ServerPacket;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+// Run by the multiTableCheck task. Walks a server through the ways players end up at tables and checks that each
+// table only ever sees its own players: JOIN_TABLE routing, players who never send JOIN_TABLE landing on
+// Server.DEFAULT_TABLE_ID, full tables and maxTables turning players away, and empty tables being pruned while their
+// neighbours carry on. Exits with status 1 if any check fails.
+public class MultiTableCheckLauncher {
+	private static final long WAIT_MILLIS = 5000;
+	// The server prunes once a second, so this covers at least two prunes
+	private static final long PRUNE_WAIT_MILLIS = 2500;
+	private static final long QUIET_MILLIS = 500;
+
+	private static int port;
+	private static int failures = 0;
+
+	public static void main(String[] arg) throws Exception {
+		ServerLoadLauncher.startHeadless();
+		ServerOptions options = new ServerOptions();
+		options.maxTables = 3;
+		Server server = new Server(ServerLoadLauncher.getFreePort(), options);
+		port = server.port;
+		server.start();
+
+		// Players who don't ask for a table share the default one with players who ask for it by id
+		ClientConnection a = connect();
+		a.sendPacket(nameOf("a"));
+		check("A player who only sends NAME is seated at the default table", awaitPlayers(a, "a"));
+		ClientConnection b = join(Server.DEFAULT_TABLE_ID, "b");
+		check("JOIN_TABLE for the default table id joins the players already there", awaitPlayers(b, "a", "b")
+				&& awaitPlayers(a, "a", "b"));
+
+		// Another table id opens a table of its own, which the default table never hears about
+		ClientConnection c = join(1, "c");
+		ClientConnection d = join(1, "d");
+		check("JOIN_TABLE for a new table id opens a separate table", awaitPlayers(d, "c", "d")
+				&& awaitPlayers(c, "c", "d") && server.numTables() == 2);
+		check("The default table doesn't see players at other tables", staysWith(a, "a", "b"));
+
+		// A seated player can't move to another table
+		d.sendPacket(joinOf(Server.DEFAULT_TABLE_ID));
+		check("A seated player who sends JOIN_TABLE again stays where they are", staysWith(a, "a", "b")
+				&& staysWith(c, "c", "d"));
+
+		// A full table turns players away, and they can go on to another table
+		ClientConnection e = join(1, "e");
+		ClientConnection f = join(1, "f");
+		check("Table 1 fills up", awaitPlayers(f, "c", "d", "e", "f"));
+		ClientConnection g = connect();
+		g.sendPacket(joinOf(1));
+		check("A fifth player at a table is denied", awaitCode(g, ServerCode.CONNECTION_DENIED));
+		g.sendPacket(joinOf(2));
+		g.sendPacket(nameOf("g"));
+		check("A denied player can join another table", awaitPlayers(g, "g") && server.numTables() == 3);
+
+		// Past maxTables, only new tables are refused
+		ClientConnection h = connect();
+		h.sendPacket(joinOf(3));
+		check("A table past maxTables is denied", awaitCode(h, ServerCode.CONNECTION_DENIED)
+				&& server.numTables() == 3);
+		h.sendPacket(joinOf(Server.DEFAULT_TABLE_ID));
+		h.sendPacket(nameOf("h"));
+		check("Existing tables still take players past maxTables", awaitPlayers(h, "a", "b", "h")
+				&& awaitPlayers(a, "a", "b", "h"));
+
+		// Once everyone at table 1 leaves, it's pruned and its id can be used again, without touching the others
+		for(ClientConnection player : Arrays.asList(c, d, e, f)) {
+			player.quit();
+		}
+		Thread.sleep(PRUNE_WAIT_MILLIS);
+		check("A table everyone has left is pruned", server.numTables() == 2);
+		check("Pruning leaves the other tables alone", staysWith(a, "a", "b", "h") && staysWith(g, "g")
+				&& a.isAlive() && g.isAlive());
+		ClientConnection i = join(1, "i");
+		check("A pruned table's id opens a fresh table", awaitPlayers(i, "i") && server.numTables() == 3);
+
+		System.out.println((failures == 0) ? "All checks passed" : failures + " checks failed");
+		System.exit((failures == 0) ? 0 : 1);
+	}
+
+	private static void check(String description, boolean passed) {
+		System.out.println((passed ? "PASS " : "FAIL ") + description);
+		if(!passed) {
+			failures++;
+		}
+	}
+
+	private static ClientConnection connect() {
+		ClientConnection player = new ClientConnection("127.0.0.1", port, "", null);
+		player.start();
+		return player;
+	}
+
+	// The name is sent after JOIN_TABLE, since a NAME sent first would seat the player at the default table
+	private static ClientConnection join(int tableId, String name) throws IOException {
+		ClientConnection player = connect();
+		player.sendPacket(joinOf(tableId));
+		player.sendPacket(nameOf(name));
+		return player;
+	}
+
+	private static ClientPacket joinOf(int tableId) {
+		ClientPacket joinPacket = new ClientPacket(ClientCode.JOIN_TABLE);
+		joinPacket.data.put("table", tableId);
+		return joinPacket;
+	}
+
+	private static ClientPacket nameOf(String name) {
+		ClientPacket namePacket = new ClientPacket(ClientCode.NAME);
+		namePacket.data.put("name", name);
+		return namePacket;
+	}
+
+	// Waits for a WAIT_FOR_PLAYERS listing exactly these names
+	private static boolean awaitPlayers(ClientConnection player, String... names) throws Exception {
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while(System.currentTimeMillis() < deadline) {
+			Optional<ServerPacket> packet = player.getPacket();
+			if(!packet.isPresent()) {
+				Thread.sleep(10);
+			} else if(packet.get().networkCode == ServerCode.WAIT_FOR_PLAYERS
+					&& getNames(packet.get()).equals(new HashSet<>(Arrays.asList(names)))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean awaitCode(ClientConnection player, ServerCode code) throws Exception {
+		long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+		while(System.currentTimeMillis() < deadline) {
+			Optional<ServerPacket> packet = player.getPacket();
+			if(!packet.isPresent()) {
+				Thread.sleep(10);
+			} else if(packet.get().networkCode == code) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// True if every WAIT_FOR_PLAYERS the player is sent for a while lists exactly these names. Anything sent before the
+	// step being checked must have been waited for already.
+	private static boolean staysWith(ClientConnection player, String... names) throws Exception {
+		long deadline = System.currentTimeMillis() + QUIET_MILLIS;
+		while(System.currentTimeMillis() < deadline) {
+			Optional<ServerPacket> packet = player.getPacket();
+			if(!packet.isPresent()) {
+				Thread.sleep(10);
+			} else if(packet.get().networkCode == ServerCode.WAIT_FOR_PLAYERS
+					&& !getNames(packet.get()).equals(new HashSet<>(Arrays.asList(names)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Set<Object> getNames(ServerPacket packet) {
+		return new HashSet<>(((Map<?, ?>)packet.data.get("players")).values());
+	}
+}
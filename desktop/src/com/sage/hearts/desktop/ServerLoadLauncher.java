@@ -0,0 +1,127 @@
+package com.sage.hearts.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.sage.hearts.client.network.ClientCode;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.Server;
+import com.sage.hearts.server.ServerOptions;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+// Run by the serverLoad task. Starts a server in this JVM, seats a number of idle players on it four to a table, and
+// reports how many threads and how much heap each connection costs the server in one of its transport modes:
+//   blocking  a reader and a writer thread per player (useSelectorTransport and useSharedExecutor false)
+//   shared    the same readers and writers on a shared cached pool (useSharedExecutor true)
+//   selector  a few I/O loops for every player (useSelectorTransport true, the default)
+// The players are plain sockets that never read, so they add no threads of their own and only a little heap. Thread
+// stacks live outside the heap, so the thread count is the part of each connection's cost the heap figure misses.
+public class ServerLoadLauncher {
+	private static final long SETTLE_MILLIS = 2000;
+	private static final long TIMEOUT_MILLIS = 60_000;
+
+	public static void main(String[] arg) throws Exception {
+		String mode = (arg.length > 0) ? arg[0] : "selector";
+		int numConnections = (arg.length > 1) ? Integer.parseInt(arg[1]) : 1000;
+
+		ServerOptions options = new ServerOptions();
+		switch(mode) {
+		case "blocking":
+			options.useSelectorTransport = false;
+			break;
+		case "shared":
+			options.useSelectorTransport = false;
+			options.useSharedExecutor = true;
+			break;
+		case "selector":
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown mode " + mode + ", expected blocking, shared or selector");
+		}
+		options.maxTables = numConnections / 4 + 1;
+
+		startHeadless();
+		Server server = new Server(getFreePort(), options);
+		server.start();
+		Sample before = Sample.take();
+
+		// Held on to so that none of the sockets are collected, and closed, before the server is measured
+		List<Socket> players = new ArrayList<>();
+		for(int i = 0; i < numConnections; i++) {
+			Socket socket = new Socket("127.0.0.1", server.port);
+			ClientPacket joinPacket = new ClientPacket(ClientCode.JOIN_TABLE);
+			joinPacket.data.put("table", i / 4);
+			byte[] frame = ClientPacket.LEGACY_CODEC.encode(joinPacket);
+			DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeInt(frame.length);
+			output.write(frame);
+			output.flush();
+			players.add(socket);
+		}
+
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		int expectedTables = (numConnections + 3) / 4;
+		while(server.numTables() < expectedTables) {
+			if(System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Only " + server.numTables() + " of " + expectedTables
+						+ " tables were opened");
+			}
+			Thread.sleep(50);
+		}
+		Thread.sleep(SETTLE_MILLIS);
+		Sample after = Sample.take();
+
+		System.out.println("Mode " + mode + ", " + numConnections + " connections at " + server.numTables()
+				+ " tables on " + Runtime.getRuntime().availableProcessors() + " cores, Java "
+				+ System.getProperty("java.version"));
+		System.out.println("  threads: " + before.threads + " -> " + after.threads + ", "
+				+ String.format("%.2f", (after.threads - before.threads) / (double)numConnections) + " per connection");
+		System.out.println("  heap:    " + before.heapBytes / 1024 + " KB -> " + after.heapBytes / 1024 + " KB, "
+				+ String.format("%.1f", (after.heapBytes - before.heapBytes) / 1024.0 / numConnections)
+				+ " KB per connection");
+
+		// Exiting drops every player at once, without each disconnect being logged
+		System.exit(0);
+	}
+
+	// The server logs through Gdx.app, but doesn't need anything to be rendered
+	static void startHeadless() {
+		HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+		config.renderInterval = -1;
+		new HeadlessApplication(new ApplicationAdapter() {
+		}, config);
+	}
+
+	static int getFreePort() throws IOException {
+		try(ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	static class Sample {
+		final int threads;
+		final long heapBytes;
+
+		private Sample(int threads, long heapBytes) {
+			this.threads = threads;
+			this.heapBytes = heapBytes;
+		}
+
+		// Collects a few times first so that only live objects are counted
+		static Sample take() throws InterruptedException {
+			for(int i = 0; i < 3; i++) {
+				System.gc();
+				Thread.sleep(100);
+			}
+			return new Sample(ManagementFactory.getThreadMXBean().getThreadCount(),
+					ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package com.sage.hearts.desktop;
+
+import com.sage.hearts.client.network.ClientCode;
+import com.sage.hearts.client.network.ClientConnection;
+import com.sage.hearts.client.network.ClientPacket;
+import com.sage.hearts.server.Server;
+import com.sage.hearts.server.ServerOptions;
+import com.sage.hearts.server.network.ServerCode;
+import com.sage.hearts.server.network.ServerPacket;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Run by the tableLoad task. Measures how many tables one server can hold in its default selector mode:
+//   memory <tables>
+//       Seats four idle players at each table and starts a round, so every table holds a dealt round that's waiting on
+//       its players. Reports heap per table and how many such tables fit in a gigabyte.
+//   cpu <tables> <seconds> [<round seconds>]
+//       Plays rounds at every table for the given time, with the server making every play on a 1 ms deadline, and
+//       reports the CPU the server's threads spend on each round. Tables per core assumes people take round seconds,
+//       180 by default, to play a round.
+// Heap figures include the players' own sockets, and CPU figures only count the server's table and I/O threads.
+public class TableLoadLauncher {
+	private static final long SETTLE_MILLIS = 2000;
+	private static final long TIMEOUT_MILLIS = 60_000;
+	private static final long DEFAULT_ROUND_SECONDS = 180;
+
+	public static void main(String[] arg) throws Exception {
+		String mode = (arg.length > 0) ? arg[0] : "memory";
+		ServerLoadLauncher.startHeadless();
+		switch(mode) {
+		case "memory":
+			measureMemory((arg.length > 1) ? Integer.parseInt(arg[1]) : 1000);
+			break;
+		case "cpu":
+			measureCpu((arg.length > 1) ? Integer.parseInt(arg[1]) : 25,
+					(arg.length > 2) ? Integer.parseInt(arg[2]) : 30,
+					(arg.length > 3) ? Integer.parseInt(arg[3]) : DEFAULT_ROUND_SECONDS);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown mode " + mode + ", expected memory or cpu");
+		}
+		// Exiting drops every player at once, without each disconnect being logged
+		System.exit(0);
+	}
+
+	private static void measureMemory(int numTables) throws Exception {
+		ServerOptions options = new ServerOptions();
+		options.maxTables = numTables;
+		Server server = new Server(ServerLoadLauncher.getFreePort(), options);
+		server.start();
+		ServerLoadLauncher.Sample before = ServerLoadLauncher.Sample.take();
+
+		List<Socket> players = new ArrayList<>();
+		for(int i = 0; i < numTables * 4; i++) {
+			Socket socket = new Socket("127.0.0.1", server.port);
+			socket.setSoTimeout((int)TIMEOUT_MILLIS);
+			ClientPacket joinPacket = new ClientPacket(ClientCode.JOIN_TABLE);
+			joinPacket.data.put("table", i / 4);
+			send(socket, joinPacket);
+			players.add(socket);
+		}
+		waitForTables(server, numTables);
+
+		// Whoever the server made host starts the round; everybody else is turned down
+		for(Socket socket : players) {
+			send(socket, new ClientPacket(ClientCode.START_GAME));
+		}
+		for(int table = 0; table < numTables; table++) {
+			Socket socket = players.get(table * 4);
+			while(readPacket(socket).networkCode != ServerCode.SEND_WARHEADS) {
+				// Everything before the round reaches warheads is skipped
+			}
+		}
+		Thread.sleep(SETTLE_MILLIS);
+		ServerLoadLauncher.Sample after = ServerLoadLauncher.Sample.take();
+
+		long bytesPerTable = (after.heapBytes - before.heapBytes) / numTables;
+		System.out.println("Memory: " + numTables + " tables with a round waiting on warheads, on Java "
+				+ System.getProperty("java.version"));
+		System.out.println("  heap:   " + before.heapBytes / 1024 + " KB -> " + after.heapBytes / 1024 + " KB, "
+				+ String.format("%.1f", bytesPerTable / 1024.0) + " KB per table");
+		System.out.println("  tables per GB of heap: " + (1L << 30) / bytesPerTable);
+	}
+
+	private static void measureCpu(int numTables, int seconds, long roundSeconds) throws Exception {
+		ServerOptions options = new ServerOptions();
+		options.maxTables = numTables;
+		options.turnTimeoutMillis = 1;
+		options.warheadsTimeoutMillis = 1;
+		Server server = new Server(ServerLoadLauncher.getFreePort(), options);
+		server.start();
+
+		List<ClientConnection> players = new ArrayList<>();
+		for(int i = 0; i < numTables * 4; i++) {
+			ClientConnection player = new ClientConnection("127.0.0.1", server.port, "Player " + i, null);
+			player.start();
+			ClientPacket joinPacket = new ClientPacket(ClientCode.JOIN_TABLE);
+			joinPacket.data.put("table", i / 4);
+			player.sendPacket(joinPacket);
+			players.add(player);
+		}
+		waitForTables(server, numTables);
+
+		// Each host starts a round as soon as its table is full, and the next one as soon as the last one ends
+		boolean[] isHost = new boolean[players.size()];
+		int rounds = 0;
+		long startCpuNanos = -1;
+		long startNanos = 0;
+		long endNanos = Long.MAX_VALUE;
+		while(System.nanoTime() < endNanos) {
+			boolean idle = true;
+			for(int i = 0; i < players.size(); i++) {
+				Optional<ServerPacket> packet = players.get(i).getPacket();
+				if(!packet.isPresent()) {
+					continue;
+				}
+				idle = false;
+				ServerCode code = packet.get().networkCode;
+				if(code == ServerCode.WAIT_FOR_PLAYERS) {
+					isHost[i] = packet.get().data.get("you").equals(packet.get().data.get("host"));
+					if(isHost[i] && ((Map<?, ?>)packet.get().data.get("players")).size() == 4) {
+						players.get(i).sendPacket(new ClientPacket(ClientCode.START_GAME));
+					}
+				} else if(code == ServerCode.ROUND_END && isHost[i]) {
+					// The clock starts once the first round has ended, so that table setup isn't counted
+					if(startCpuNanos < 0) {
+						startCpuNanos = getServerCpuNanos();
+						startNanos = System.nanoTime();
+						endNanos = startNanos + seconds * 1_000_000_000L;
+					} else {
+						rounds++;
+					}
+				}
+			}
+			if(idle) {
+				Thread.sleep(1);
+			}
+		}
+		long cpuNanos = getServerCpuNanos() - startCpuNanos;
+		double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+		double cpuMillisPerRound = cpuNanos / 1e6 / rounds;
+		System.out.println("CPU: " + numTables + " tables for " + String.format("%.1f", elapsedSeconds) + " s on "
+				+ Runtime.getRuntime().availableProcessors() + " cores, Java " + System.getProperty("java.version"));
+		System.out.println("  " + rounds + " rounds, " + cpuNanos / 1_000_000 + " ms of server CPU, "
+				+ String.format("%.2f", cpuMillisPerRound) + " ms per round");
+		System.out.println("  tables per core at " + roundSeconds + " s per round: "
+				+ (long)(roundSeconds * 1000 / cpuMillisPerRound));
+	}
+
+	private static void waitForTables(Server server, int numTables) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while(server.numTables() < numTables) {
+			if(System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("Only " + server.numTables() + " of " + numTables
+						+ " tables were opened");
+			}
+			Thread.sleep(50);
+		}
+	}
+
+	// The threads that handle table events and the selector I/O loops
+	private static long getServerCpuNanos() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long cpuNanos = 0;
+		for(ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+			if(info != null && (info.getThreadName().startsWith("Table events")
+					|| info.getThreadName().startsWith("Server I/O"))) {
+				cpuNanos += Math.max(0, threads.getThreadCpuTime(info.getThreadId()));
+			}
+		}
+		return cpuNanos;
+	}
+
+	// The idle players never take part in the handshake, so everything is sent and read with the legacy codec
+	private static void send(Socket socket, ClientPacket packet) throws IOException {
+		byte[] frame = ClientPacket.LEGACY_CODEC.encode(packet);
+		DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+		output.writeInt(frame.length);
+		output.write(frame);
+		output.flush();
+	}
+
+	private static ServerPacket readPacket(Socket socket) throws IOException {
+		DataInputStream input = new DataInputStream(socket.getInputStream());
+		return ServerPacket.decode(input.readNBytes(input.readInt()));
+	}
+}